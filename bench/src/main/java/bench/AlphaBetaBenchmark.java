@@ -0,0 +1,68 @@
+package bench;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.Pair;
+
+import ai.AlphaBeta;
+
+/**
+ * Whole fixed-depth searches with the engine the game plays with, at
+ * its default settings, from quiet positions. The transposition table is
+ * emptied before every search, so each one starts cold rather than
+ * finding the last one's results. In the crowded positions the threat
+ * search usually finds a forced win before the main search begins, so
+ * those time the threat search.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class AlphaBetaBenchmark {
+
+	@Param({"15", "19"})
+	int size;
+
+	@Param({"OPENING", "MIDGAME", "CROWDED"})
+	Positions.Phase phase;
+
+	@Param({"2", "4"})
+	int depth;
+
+	Board board;
+	AlphaBeta search;
+
+	@Setup
+	public void setUp() {
+		board = Positions.quiet(size, phase);
+		search = new AlphaBeta();
+	}
+
+	@Setup(Level.Invocation)
+	public void clearTable() {
+		search.newGame();
+	}
+
+	@Benchmark
+	public Pair<Move,Integer> search() {
+		return search.search(board, depth);
+	}
+}
@@ -0,0 +1,77 @@
+package bench;
+
+import gomoku.Board;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.IncrementalEvaluator;
+import ai.MoveGenerator;
+
+/**
+ * The IncrementalEvaluator: building its tables for a position, which
+ * every search does once, playing and taking back a move with it
+ * attached, which the search does at every node, and scoring the
+ * position from the tables.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EvaluatorBenchmark {
+
+	@Param({"15", "19"})
+	int size;
+
+	@Param({"OPENING", "MIDGAME", "CROWDED"})
+	Positions.Phase phase;
+
+	Board board;
+	IncrementalEvaluator evaluator;
+	// The first candidate the search would try
+	int x;
+	int y;
+
+	@Setup
+	public void setUp() {
+		board = Positions.quiet(size, phase);
+		evaluator = new IncrementalEvaluator();
+		evaluator.attach(board);
+		int[] moves = new int[size * size];
+		new MoveGenerator().generate(board, moves);
+		x = moves[0] / size;
+		y = moves[0] % size;
+	}
+
+	@Benchmark
+	public IncrementalEvaluator attach() {
+		evaluator.attach(board);
+		return evaluator;
+	}
+
+	@Benchmark
+	public int playAndTakeBack() {
+		board.doMove(x, y);
+		int score = evaluator.evaluate(board);
+		board.undoMove();
+		return score;
+	}
+
+	@Benchmark
+	public int evaluate() {
+		return evaluator.evaluate(board);
+	}
+}
@@ -0,0 +1,54 @@
+package bench;
+
+import gomoku.Board;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.MoveGenerator;
+
+/**
+ * Generating the candidate moves of a position, as the search does at
+ * every node, into a list that is reused from one call to the next.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MoveGeneratorBenchmark {
+
+	@Param({"15", "19"})
+	int size;
+
+	@Param({"OPENING", "MIDGAME", "CROWDED"})
+	Positions.Phase phase;
+
+	Board board;
+	MoveGenerator generator;
+	int[] moves;
+
+	@Setup
+	public void setUp() {
+		board = Positions.quiet(size, phase);
+		generator = new MoveGenerator();
+		moves = new int[size * size];
+	}
+
+	@Benchmark
+	public int generate() {
+		return generator.generate(board, moves);
+	}
+}
@@ -0,0 +1,109 @@
+package bench;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+
+import java.util.Random;
+
+/**
+ * The fixed corpus of positions every benchmark runs over. Positions are
+ * grown from a seeded random number generator rather than taken from the
+ * engine, so they stay the same however the engine changes, and a
+ * benchmark run today can be compared with one from last month.
+ */
+public class Positions {
+
+	/**
+	 * How far a game has progressed, as a share of the squares taken.
+	 */
+	public enum Phase {
+		OPENING(0.03),
+		MIDGAME(0.15),
+		CROWDED(0.40);
+
+		final double fill;
+
+		Phase(double fill) {
+			this.fill = fill;
+		}
+	}
+
+	private final static long SEED = 20130120L;
+	private final static int[] DX = {1, 0, 1, 1};
+	private final static int[] DY = {0, 1, 1, -1};
+
+	private Positions() {}
+
+	/**
+	 * Returns a size by size board in the given phase, with BLACK to
+	 * move. Every piece touches an earlier one, as in a real game, and
+	 * nobody has five in a row yet.
+	 */
+	public static Board create(int size, Phase phase) {
+		return create(size, phase, false);
+	}
+
+	/**
+	 * Returns a position like create() does, but one in which neither
+	 * player has three pieces in any five squares in a row that the other
+	 * has no piece in. In the positions create() makes somebody nearly
+	 * always has a four or an open three to win with, and a search that
+	 * looks for forced wins first does nothing but find it.
+	 */
+	public static Board quiet(int size, Phase phase) {
+		return create(size, phase, true);
+	}
+
+	private static Board create(int size, Phase phase, boolean quiet) {
+		Random random = new Random(SEED * 31 + size * 7 + phase.ordinal());
+		Board board = new Board(size, size, Player.BLACK);
+		board.doMove(size/2, size/2);
+		// An even count leaves BLACK to move
+		int target = Math.max(2, (int) (size * size * phase.fill)) & ~1;
+		while (board.getMoveCount() < target) {
+			Move near = board.getMove(random.nextInt(board.getMoveCount()));
+			int x = near.getX() + random.nextInt(3) - 1;
+			int y = near.getY() + random.nextInt(3) - 1;
+			if (x < 0 || x >= size || y < 0 || y >= size || board.get(x, y) != Player.NONE) {
+				continue;
+			}
+			board.doMove(x, y);
+			if (board.isWon() || quiet && makesThree(board, x, y)) {
+				board.undoMove();
+			}
+		}
+		return board;
+	}
+
+	/**
+	 * Returns whether the piece at (x,y) leaves its player three or more
+	 * pieces in some five squares in a row without a piece of the other
+	 * player. The edge of the board counts as the other player's.
+	 */
+	private static boolean makesThree(Board board, int x, int y) {
+		int player = board.get(x, y);
+		for (int d = 0; d < 4; d++) {
+			// Every five squares in a row that (x,y) is one of
+			for (int start = -4; start <= 0; start++) {
+				int own = 0;
+				int other = 0;
+				for (int i = start; i < start + 5; i++) {
+					int px = x + i*DX[d];
+					int py = y + i*DY[d];
+					if (px < 0 || px >= board.getDimX() || py < 0 || py >= board.getDimY()) {
+						other++;
+					} else if (board.get(px, py) == player) {
+						own++;
+					} else if (board.get(px, py) != Player.NONE) {
+						other++;
+					}
+				}
+				if (own >= 3 && other == 0) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+}
@@ -0,0 +1,96 @@
+package bench;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import tournament.EngineSpec;
+import util.Pair;
+
+import ai.Engine;
+
+/**
+ * Fixed-depth searches under each of the Reductions tables that were
+ * tried when the default was picked, given as they are to EngineSpec.
+ * Besides the time, each search reports the nodes it visited, which
+ * unlike the time is the same on every machine and every run: there is
+ * one thread, and every search has a new engine to itself.
+ *
+ *   java -jar bench/target/benchmarks.jar ReductionsBenchmark
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class ReductionsBenchmark {
+
+	@Param({"off", "0.25/2.5", "0.5/2", "1/1.5"})
+	String lmr;
+
+	@Param({"off", "100/300"})
+	String futility;
+
+	@Param({"OPENING", "MIDGAME"})
+	Positions.Phase phase;
+
+	@Param({"5", "7"})
+	int depth;
+
+	/**
+	 * The nodes searched, summed over an iteration's one search.
+	 */
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	@State(Scope.Thread)
+	public static class Nodes {
+
+		public long nodes;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			nodes = 0;
+		}
+	}
+
+	Board board;
+	EngineSpec spec;
+	Engine engine;
+
+	@Setup
+	public void setUp() {
+		board = Positions.quiet(15, phase);
+		spec = EngineSpec.parse("alphabeta:depth=" + depth + ",lmr=" + lmr + ",futility=" + futility);
+	}
+
+	/**
+	 * Starts every search with a new engine, since the move ordering
+	 * learns from one search to the next as well as the table does.
+	 */
+	@Setup(Level.Iteration)
+	public void newEngine() {
+		engine = spec.create();
+	}
+
+	@Benchmark
+	public Pair<Move,Integer> search(Nodes counter) {
+		Pair<Move,Integer> result = engine.think(board);
+		counter.nodes += engine.getNodes();
+		return result;
+	}
+}
@@ -0,0 +1,56 @@
+package bench;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.Pair;
+
+import ai.GomokuAI;
+
+/**
+ * Whole searches with the legacy engine. A search leaves the board as
+ * it found it, so one board serves every invocation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+
+	@Param({"15", "19"})
+	int size;
+
+	@Param({"OPENING", "MIDGAME", "CROWDED"})
+	Positions.Phase phase;
+
+	@Param({"1", "2"})
+	int depth;
+
+	Board board;
+
+	@Setup
+	public void setUp() {
+		board = Positions.create(size, phase);
+	}
+
+	@Benchmark
+	public Pair<Move,Integer> minimax() {
+		return GomokuAI.minimax(board, depth);
+	}
+}
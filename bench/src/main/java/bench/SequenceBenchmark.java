@@ -0,0 +1,76 @@
+package bench;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import util.Pair;
+
+import ai.GomokuAI;
+import ai.Sequence;
+
+/**
+ * The building blocks of the legacy evaluation: finding the sequences on
+ * the board, scoring them, and collecting the replies they suggest, along
+ * with the one-ply search made of them.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SequenceBenchmark {
+
+	@Param({"15", "19"})
+	int size;
+
+	@Param({"OPENING", "MIDGAME", "CROWDED"})
+	Positions.Phase phase;
+
+	Board board;
+	Set<Sequence> black;
+	Set<Sequence> white;
+
+	@Setup
+	public void setUp() {
+		board = Positions.create(size, phase);
+		black = GomokuAI.findSequences(board, Player.BLACK);
+		white = GomokuAI.findSequences(board, Player.WHITE);
+	}
+
+	@Benchmark
+	public Set<Sequence> findSequences() {
+		return GomokuAI.findSequences(board, Player.BLACK);
+	}
+
+	@Benchmark
+	public int[] evaluate() {
+		return GomokuAI.evaluate(board);
+	}
+
+	@Benchmark
+	public Set<Move> collectReplies() {
+		return GomokuAI.collectReplies(black, white, board.getCurrentPlayer());
+	}
+
+	@Benchmark
+	public Pair<Move,Integer> bestMove() {
+		return GomokuAI.bestMove(board);
+	}
+}
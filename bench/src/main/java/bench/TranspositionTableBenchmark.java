@@ -0,0 +1,67 @@
+package bench;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import ai.TranspositionTable;
+
+/**
+ * Probing and storing in a TranspositionTable, over a fixed set of
+ * random hashes, half of which are in the table, so probes both hit and
+ * miss. A table of the default size is far bigger than the caches, as
+ * it is in a search; a small one shows the cost without cache misses.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TranspositionTableBenchmark {
+
+	private final static int HASHES = 1 << 16;
+
+	@Param({"12", "20"})
+	int bits;
+
+	TranspositionTable table;
+	long[] hashes;
+	int next;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(20130120L);
+		table = new TranspositionTable(bits);
+		hashes = new long[HASHES];
+		for (int i = 0; i < HASHES; i++) {
+			hashes[i] = random.nextLong();
+			if ((i & 1) == 0) {
+				table.store(hashes[i], 4, TranspositionTable.EXACT, i, 7, 7);
+			}
+		}
+	}
+
+	@Benchmark
+	public long probe() {
+		next = (next + 1) & (HASHES - 1);
+		return table.probe(hashes[next]);
+	}
+
+	@Benchmark
+	public void store() {
+		next = (next + 1) & (HASHES - 1);
+		table.store(hashes[next], next & 7, TranspositionTable.LOWER, next, 7, 7);
+	}
+}
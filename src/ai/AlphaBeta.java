@@ -0,0 +1,732 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.Symmetry;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.Pair;
+
+/**
+ * A fail-soft alpha-beta search written in negamax form. Scores inside
+ * the search are always from the point of view of the player to move;
+ * search() converts the result back to the black-minus-white convention
+ * used by GomokuAI.minimax, so the two are interchangeable.
+ *
+ * It is a principal variation search: the first child of every node,
+ * which ordering makes the likely best, gets the full window, and the
+ * rest are only tested with a null window to prove they are no better.
+ * The few that turn out to be are searched again with the full window.
+ * While deepening, each iteration also starts with an aspiration window
+ * around the score of an earlier iteration, widened whenever the score
+ * falls outside of it. The evaluation favours whoever is to move at
+ * the leaves, so scores swing by thousands between odd and even
+ * depths; the window is centred on the last iteration two plies
+ * shallower, which lands far closer than the one just before.
+ *
+ * Quiet moves late in the order are searched less deeply, or not at all
+ * near the horizon, as set by its Reductions.
+ *
+ * As an Engine, it searches to a fixed depth, or iteratively deepens
+ * within a time budget if one is set.
+ */
+public class AlphaBeta implements Engine {
+
+	public final static int INFINITY = 1000000;
+	public final static int MAX_DEPTH = 32;
+	// Node budget for the threat search run before each search
+	public final static int THREAT_BUDGET = 5000;
+	// Half the width of the first aspiration window, which grows this
+	// many times over each time the score falls outside of it
+	public final static int ASPIRATION_WINDOW = 100;
+	public final static int ASPIRATION_GROWTH = 4;
+	// Scores this far from 0 come from threats, and don't settle from
+	// one iteration to the next, so they are searched with a full window
+	public final static int ASPIRATION_LIMIT = Evaluator.WIN / 4;
+
+	Evaluator evaluator;
+	MoveOrdering ordering;
+	TranspositionTable table;
+	MoveGenerator generator;
+	ThreatSearch threats;
+	OpeningBook book;
+	Reductions reductions;
+	// Candidate moves for each ply, as packed square indices
+	int[][] moves;
+
+	long deadline;
+	boolean aborted;
+	long nodes;
+	int completedDepth;
+	SearchStats stats;
+	long startTime;
+
+	// Set from other threads to abort a search in progress.
+	AtomicBoolean stop;
+	// Nonzero for the helper threads of a ParallelSearch.
+	int helper;
+
+	// Limits for think(): a time budget in milliseconds, or if that is 0,
+	// a fixed depth
+	int depthLimit;
+	long timeLimit;
+
+	public AlphaBeta() {
+
+		this(new TranspositionTable());
+	}
+
+	/**
+	 * Constructs a search with an IncrementalEvaluator, whose shapes also
+	 * drive a HeuristicOrdering, that consults the given table.
+	 */
+	public AlphaBeta(TranspositionTable table) {
+
+		this(new IncrementalEvaluator(), table);
+	}
+
+	private AlphaBeta(IncrementalEvaluator evaluator, TranspositionTable table) {
+
+		this(evaluator, new HeuristicOrdering(evaluator), table);
+	}
+
+	public AlphaBeta(Evaluator evaluator, MoveOrdering ordering) {
+
+		this(evaluator, ordering, new TranspositionTable());
+	}
+
+	/**
+	 * Constructs a search that consults the given table. The table is
+	 * kept between calls to search(), so results carry over from one
+	 * move of a game to the next.
+	 */
+	public AlphaBeta(Evaluator evaluator, MoveOrdering ordering, TranspositionTable table) {
+
+		this.evaluator = evaluator;
+		this.ordering = ordering;
+		this.table = table;
+		this.generator = new MoveGenerator();
+		// The threat search reads the shapes the main search keeps anyway,
+		// when there are any, rather than keeping a second set
+		this.threats = evaluator instanceof IncrementalEvaluator ?
+				new ThreatSearch(THREAT_BUDGET, (IncrementalEvaluator) evaluator) : new ThreatSearch(THREAT_BUDGET);
+		this.stats = new SearchStats();
+		this.stop = new AtomicBoolean();
+		this.reductions = new Reductions();
+		this.depthLimit = 4;
+	}
+
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Returns the number of nodes visited by the last search.
+	 */
+	@Override
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the statistics of the last search. The same object is
+	 * reused, and reset, by the next search.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Returns the best move the transposition table knows of for the
+	 * board's position, or null if it has none. Straight after a search,
+	 * this is the reply the search expects to the move it chose.
+	 */
+	public Move getHashMove(Board board) {
+		int s = board.getCanonicalSymmetry();
+		int square = hashMove(table.probe(board.getHash(s)), board, s);
+		if (square < 0) {
+			return null;
+		}
+		return new Move(board.getCurrentPlayer(), square / board.getDimY(), square % board.getDimY());
+	}
+
+	/**
+	 * Returns the depth of the deepest iteration the last search completed.
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Makes every search look in the given book first, and play its
+	 * move without searching if the position is in it. May be null.
+	 */
+	public void setBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * Sets how quiet moves are reduced and pruned; Reductions.NONE
+	 * searches every move to full depth.
+	 */
+	public void setReductions(Reductions reductions) {
+		this.reductions = reductions;
+	}
+
+	/**
+	 * Makes think() search to a fixed depth, without a time budget.
+	 */
+	public void setDepth(int depth) {
+		this.depthLimit = depth;
+		this.timeLimit = 0;
+	}
+
+	/**
+	 * Makes think() deepen iteratively for the given number of
+	 * milliseconds.
+	 */
+	public void setTimeLimit(long budget) {
+		this.timeLimit = budget;
+	}
+
+	@Override
+	public Pair<Move,Integer> think(Board board) {
+		return timeLimit > 0 ? searchTimed(board, timeLimit) : search(board, depthLimit);
+	}
+
+	/**
+	 * Clears the transposition table.
+	 */
+	@Override
+	public void newGame() {
+		table.clear();
+	}
+
+	/**
+	 * Aborts the search in progress, which may be running on another
+	 * thread. An aborted search returns null if it had not yet completed
+	 * an iteration.
+	 */
+	public void stop() {
+		stop.set(true);
+	}
+
+	/**
+	 * Searches depth plies ahead and returns the best Move for the current
+	 * player along with the score difference. Large positive scores are
+	 * good for BLACK, large negative scores are good for WHITE.
+	 */
+	public Pair<Move,Integer> search(Board board, int depth) {
+		stop.set(false);
+		evaluator.attach(board);
+		try {
+			return searchDepth(board, depth);
+		} finally {
+			evaluator.detach(board);
+		}
+	}
+
+	/**
+	 * Iterative deepening: searches to depth 1, 2, 3... until the time
+	 * budget (in milliseconds) runs out, and returns the result of the
+	 * deepest iteration that completed. The first iteration always runs
+	 * to completion so that there is a move to return. Each iteration
+	 * searches the previous best move first, and the rest of the
+	 * previous principal variation is found in the transposition table.
+	 */
+	public Pair<Move,Integer> searchTimed(Board board, long budget) {
+		stop.set(false);
+		evaluator.attach(board);
+		try {
+			return deepen(board, budget);
+		} finally {
+			evaluator.detach(board);
+		}
+	}
+
+	Pair<Move,Integer> searchDepth(Board board, int depth) {
+		SearchEvent event = begin();
+		try {
+			Pair<Move,Integer> known = bookMove(board);
+			if (known != null) {
+				return known;
+			}
+			int count = rootMoves(board);
+			if (count == 0 || depth < 1) {
+				// Nothing to search (e.g. the empty board), so fall back on the
+				// one-ply search, which knows how to open a game.
+				return GomokuAI.bestMove(board);
+			}
+			Pair<Move,Integer> forced = threatWin(board, Long.MAX_VALUE);
+			if (forced != null) {
+				return forced;
+			}
+			int s = board.getCanonicalSymmetry();
+			promoteHashMove(table.probe(board.getHash(s)), moves[0], count, board, s);
+			deadline = Long.MAX_VALUE;
+			aborted = false;
+			Pair<Move,Integer> result = iterate(board, count, depth, null);
+			if (!aborted) {
+				completedDepth = depth;
+			}
+			return result;
+		} finally {
+			end(board, event);
+		}
+	}
+
+	Pair<Move,Integer> deepen(Board board, long budget) {
+		long stopTime = System.nanoTime() + budget * 1000000L;
+		SearchEvent event = begin();
+		try {
+			Pair<Move,Integer> known = bookMove(board);
+			if (known != null) {
+				return known;
+			}
+			int count = rootMoves(board);
+			if (count == 0) {
+				return GomokuAI.bestMove(board);
+			}
+			// The threat search may take up to half the budget, which
+			// leaves the rest for the main search
+			Pair<Move,Integer> forced = threatWin(board, stopTime - budget * 500000L);
+			if (forced != null) {
+				return forced;
+			}
+			deadline = Long.MAX_VALUE;
+			aborted = false;
+			Pair<Move,Integer> result = null;
+			// The score of each completed iteration, by depth
+			Integer[] scores = new Integer[MAX_DEPTH+1];
+			for (int depth = 1; depth <= MAX_DEPTH; depth++) {
+				if (helper > 0 && depth > 1 && ((depth + helper) & 1) == 0) {
+					// Helpers skip alternate depths so that between them they
+					// run ahead of the main thread instead of duplicating it.
+					continue;
+				}
+				Pair<Move,Integer> iteration = iterate(board, count, depth, depth > 2 ? scores[depth-2] : null);
+				if (aborted) {
+					break;
+				}
+				result = iteration;
+				scores[depth] = result.getSecond();
+				completedDepth = depth;
+				Move best = result.getFirst();
+				moveToFront(moves[0], count, best.getX()*board.getDimY() + best.getY());
+				deadline = stopTime;
+				if (System.nanoTime() >= deadline) {
+					break;
+				}
+			}
+			return result;
+		} finally {
+			end(board, event);
+		}
+	}
+
+	/**
+	 * Resets the counters for a new search, and starts timing it.
+	 */
+	private SearchEvent begin() {
+		nodes = 0;
+		completedDepth = 0;
+		stats.reset();
+		ordering.newSearch();
+		startTime = System.nanoTime();
+		SearchEvent event = new SearchEvent();
+		event.begin();
+		return event;
+	}
+
+	private void end(Board board, SearchEvent event) {
+		stats.time = System.nanoTime() - startTime;
+		event.end();
+		if (event.shouldCommit()) {
+			event.moveCount = board.getMoveCount();
+			event.completedDepth = completedDepth;
+			event.nodes = stats.getNodes();
+			event.threatNodes = stats.threatNodes;
+			event.leafEvaluations = stats.leafEvaluations;
+			event.helper = helper;
+			event.commit();
+		}
+	}
+
+	/**
+	 * Searches the root as one timed iteration, with an aspiration window
+	 * around the given score if there is one.
+	 */
+	private Pair<Move,Integer> iterate(Board board, int count, int depth, Integer guess) {
+		IterationEvent event = new IterationEvent();
+		event.begin();
+		long start = System.nanoTime();
+		long startNodes = nodes;
+		Pair<Move,Integer> result = guess == null ?
+				searchRoot(board, count, depth, -INFINITY, INFINITY) : aspirate(board, count, depth, guess);
+		if (!aborted) {
+			stats.iterationTimes[depth] = System.nanoTime() - start;
+		}
+		event.end();
+		if (event.shouldCommit()) {
+			event.depth = depth;
+			event.nodes = nodes - startNodes;
+			event.aborted = aborted;
+			event.helper = helper;
+			event.commit();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the book move for the position, scored by the evaluator,
+	 * or null if there is no book or the position isn't in it.
+	 */
+	Pair<Move,Integer> bookMove(Board board) {
+		if (book == null || helper > 0) {
+			return null;
+		}
+		Move move = book.probe(board);
+		if (move == null) {
+			return null;
+		}
+		board.doMove(move.getX(), move.getY());
+		int score = evaluator.evaluate(board);
+		board.undoMove();
+		return new Pair<Move,Integer>(move, score);
+	}
+
+	/**
+	 * Looks for a forced win by fours, then by fours and open threes,
+	 * which is often far beyond the horizon of the main search, until
+	 * System.nanoTime() reaches the given deadline. Returns the winning
+	 * move with a winning score, or null if there is none. Only the main
+	 * thread of a ParallelSearch does this.
+	 */
+	Pair<Move,Integer> threatWin(Board board, long deadline) {
+		if (helper > 0) {
+			return null;
+		}
+		long start = System.nanoTime();
+		threats.setLimits(stop, deadline);
+		Move win = threats.findVCF(board);
+		stats.threatNodes += threats.getNodes();
+		if (win == null) {
+			win = threats.findVCT(board);
+			stats.threatNodes += threats.getNodes();
+		}
+		nodes += stats.threatNodes;
+		stats.threatTime = System.nanoTime() - start;
+		if (win == null) {
+			return null;
+		}
+		// A proven win can't be improved on by searching any deeper
+		completedDepth = MAX_DEPTH;
+		return new Pair<Move,Integer>(win, win.getPlayer() == Player.BLACK ? Evaluator.WIN : -Evaluator.WIN);
+	}
+
+	/**
+	 * Makes sure there is a move list for every ply, long enough for the
+	 * candidates of any position MAX_DEPTH moves from this one, then
+	 * generates and orders the moves at the root. Returns how many there
+	 * are.
+	 */
+	int rootMoves(Board board) {
+		int capacity = MoveGenerator.capacity(board, MAX_DEPTH);
+		if (moves == null || moves[0].length < capacity) {
+			moves = new int[MAX_DEPTH+1][capacity];
+		}
+		int count = generator.generate(board, moves[0]);
+		ordering.order(board, moves[0], count, 0);
+		return count;
+	}
+
+	/**
+	 * Searches the root with a window around the guessed score, which
+	 * like the result is black minus white, and searches again with a
+	 * wider one for as long as the score falls outside of it.
+	 */
+	Pair<Move,Integer> aspirate(Board board, int count, int depth, int guess) {
+		int sign = board.getCurrentPlayer() == Player.BLACK ? 1 : -1;
+		int center = sign * guess;
+		if (Math.abs(center) >= ASPIRATION_LIMIT) {
+			return searchRoot(board, count, depth, -INFINITY, INFINITY);
+		}
+		int delta = ASPIRATION_WINDOW;
+		int alpha = center - delta;
+		int beta = center + delta;
+		while (true) {
+			Pair<Move,Integer> result = searchRoot(board, count, depth, alpha, beta);
+			if (aborted) {
+				return null;
+			}
+			int score = sign * result.getSecond();
+			if (score > alpha && score < beta) {
+				return result;
+			}
+			stats.aspirationFailures++;
+			delta *= ASPIRATION_GROWTH;
+			if (score <= alpha) {
+				alpha = delta >= ASPIRATION_LIMIT ? -INFINITY : Math.max(score - delta, -INFINITY);
+			} else {
+				beta = delta >= ASPIRATION_LIMIT ? INFINITY : Math.min(score + delta, INFINITY);
+			}
+			if (alpha == -INFINITY && beta == INFINITY) {
+				return searchRoot(board, count, depth, alpha, beta);
+			}
+		}
+	}
+
+	/**
+	 * Searches the first count moves of moves[0], which are already
+	 * ordered, within the window [alpha, beta]. If the best score falls
+	 * outside of the window it is only a bound, and the move that goes
+	 * with it may not be the best. If the search is aborted part way
+	 * through, the result is meaningless.
+	 */
+	Pair<Move,Integer> searchRoot(Board board, int count, int depth, int alpha, int beta) {
+		int player = board.getCurrentPlayer();
+		int dimY = board.getDimY();
+		int[] children = moves[0];
+		stats.nodesPerPly[0]++;
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = -1;
+		for (int i = 0; i < count; i++) {
+			board.doMove(children[i] / dimY, children[i] % dimY);
+			int score = searchChild(board, depth, 1, alpha, beta, i, 0);
+			board.undoMove();
+			if (aborted) {
+				return null;
+			}
+			if (bestMove < 0 || score > best) {
+				bestMove = children[i];
+				best = score;
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						break;
+					}
+				}
+			}
+		}
+		int bound = best >= beta ? TranspositionTable.LOWER
+				: best <= originalAlpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+		store(board, board.getCanonicalSymmetry(), depth, bound, best, bestMove);
+		return new Pair<Move,Integer>(new Move(player, bestMove / dimY, bestMove % dimY),
+				player == Player.BLACK ? best : -best);
+	}
+
+	/**
+	 * Searches the index'th child of a node, which has just been played,
+	 * and returns its score for the player at the node. Every child but
+	 * the first is first searched with a null window at alpha, reduced by
+	 * the given number of plies, and only searched again, first at full
+	 * depth and then with the full window, while that shows it to be
+	 * better.
+	 */
+	private int searchChild(Board board, int depth, int ply, int alpha, int beta, int index, int reduction) {
+		if (index == 0) {
+			return -negamax(board, depth-1, ply, -beta, -alpha);
+		}
+		int score;
+		if (reduction > 0) {
+			stats.reduced++;
+			score = -negamax(board, depth-1-reduction, ply, -alpha-1, -alpha);
+			if (score <= alpha || aborted) {
+				return score;
+			}
+			stats.reducedResearches++;
+		}
+		score = -negamax(board, depth-1, ply, -alpha-1, -alpha);
+		if (score > alpha && score < beta && !aborted) {
+			stats.researches++;
+			score = -negamax(board, depth-1, ply, -beta, -alpha);
+		}
+		return score;
+	}
+
+	/**
+	 * Returns the value of the board for the player to move, searching
+	 * depth plies ahead. The result may fall outside of [alpha, beta]; a
+	 * value <= alpha is an upper bound and a value >= beta a lower bound.
+	 */
+	int negamax(Board board, int depth, int ply, int alpha, int beta) {
+		if ((++nodes & 1023) == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+			aborted = true;
+		}
+		if (aborted) {
+			return 0;
+		}
+		stats.nodesPerPly[ply]++;
+		if (board.isWon()) {
+			// The previous move made five, so the player to move has lost
+			return -Evaluator.WIN;
+		}
+		if (depth == 0) {
+			return evaluate(board);
+		}
+		int s = board.getCanonicalSymmetry();
+		long entry = table.probe(board.getHash(s));
+		stats.tableProbes++;
+		if (entry != 0) {
+			stats.tableHits++;
+		}
+		if (entry != 0 && TranspositionTable.depth(entry) >= depth) {
+			int score = TranspositionTable.score(entry);
+			switch (TranspositionTable.bound(entry)) {
+			case TranspositionTable.EXACT:
+				return score;
+			case TranspositionTable.LOWER:
+				if (score >= beta) {
+					return score;
+				}
+				break;
+			case TranspositionTable.UPPER:
+				if (score <= alpha) {
+					return score;
+				}
+				break;
+			}
+		}
+		int dimY = board.getDimY();
+		int[] children = moves[ply];
+		int count = generator.generate(board, children);
+		if (count == 0) {
+			return evaluate(board);
+		}
+		stats.expanded++;
+		stats.replies += count;
+		if (depth > 1) {
+			// Ordering the children of a frontier node would cost as much
+			// as evaluating them, which is all searching them does.
+			ordering.order(board, children, count, ply);
+		}
+		promoteHashMove(entry, children, count, board, s);
+		// If the node is close enough to the horizon, the most its quiet
+		// moves are expected to score
+		int margin = reductions.margin(depth);
+		boolean prune = margin >= 0 && Math.abs(alpha) < ASPIRATION_LIMIT;
+		int futility = prune ? evaluate(board) + margin : INFINITY;
+		int originalAlpha = alpha;
+		int best = -INFINITY;
+		int bestMove = -1;
+		for (int i = 0; i < count; i++) {
+			int reduction = 0;
+			if (i > 0 && !isThreat(board, children[i])) {
+				if (futility <= alpha) {
+					stats.pruned++;
+					best = Math.max(best, futility);
+					continue;
+				}
+				if (depth >= Reductions.MIN_DEPTH) {
+					reduction = reductions.reduction(depth, i);
+				}
+			}
+			board.doMove(children[i] / dimY, children[i] % dimY);
+			int score = searchChild(board, depth, ply+1, alpha, beta, i, reduction);
+			board.undoMove();
+			if (aborted) {
+				return 0;
+			}
+			if (score > best) {
+				best = score;
+				bestMove = children[i];
+				if (score > alpha) {
+					alpha = score;
+					if (alpha >= beta) {
+						stats.cutoffs++;
+						if (i == 0) {
+							stats.firstMoveCutoffs++;
+						}
+						ordering.cutoff(board, bestMove, depth, ply);
+						break;
+					}
+				}
+			}
+		}
+		int bound = best >= beta ? TranspositionTable.LOWER
+				: best <= originalAlpha ? TranspositionTable.UPPER : TranspositionTable.EXACT;
+		store(board, s, depth, bound, best, bestMove);
+		return best;
+	}
+
+	/**
+	 * Moves the best move recorded in a table entry, if any, to the
+	 * front of the list so that it is searched first.
+	 */
+	void promoteHashMove(long entry, int[] children, int count, Board board, int s) {
+		int square = hashMove(entry, board, s);
+		if (square >= 0) {
+			moveToFront(children, count, square);
+		}
+	}
+
+	/**
+	 * Stores a result under the board's hash in symmetry s, which should
+	 * be its canonical one. The best move is stored as its image under
+	 * s, so that every position sharing the canonical hash can read it
+	 * back with hashMove.
+	 */
+	void store(Board board, int s, int depth, int bound, int score, int move) {
+		int dimY = board.getDimY();
+		int square = Symmetry.square(s, move, board.getDimX(), dimY);
+		table.store(board.getHash(s), depth, bound, score, square / dimY, square % dimY);
+	}
+
+	/**
+	 * Returns the best move recorded in an entry probed under symmetry s,
+	 * mapped back onto the board, or -1 if there is none.
+	 */
+	int hashMove(long entry, Board board, int s) {
+		if (entry == 0 || !TranspositionTable.hasMove(entry)) {
+			return -1;
+		}
+		int dimY = board.getDimY();
+		int square = TranspositionTable.moveX(entry)*dimY + TranspositionTable.moveY(entry);
+		return Symmetry.square(Symmetry.inverse(s), square, board.getDimX(), dimY);
+	}
+
+	/**
+	 * Returns whether playing on the square would make, or stop the
+	 * opponent from making, an open three or better; the moves ordering
+	 * puts first, which are never reduced or pruned.
+	 */
+	boolean isThreat(Board board, int square) {
+		int player = board.getCurrentPlayer();
+		return bestShape(board, player, square) >= Patterns.OPEN_THREE
+				|| bestShape(board, Player.other(player), square) >= Patterns.OPEN_THREE;
+	}
+
+	private int bestShape(Board board, int player, int square) {
+		if (evaluator instanceof IncrementalEvaluator) {
+			return ((IncrementalEvaluator) evaluator).bestShape(player, square);
+		}
+		int dimY = board.getDimY();
+		int best = Patterns.NONE;
+		for (int o = 0; o < 4; o++) {
+			best = Math.max(best, Patterns.shape(board.getBitBoard(), player, o, square / dimY, square % dimY));
+		}
+		return best;
+	}
+
+	void moveToFront(int[] children, int count, int square) {
+		for (int i = 0; i < count; i++) {
+			if (children[i] == square) {
+				System.arraycopy(children, 0, children, 1, i);
+				children[0] = square;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Static evaluation from the point of view of the player to move.
+	 */
+	int evaluate(Board board) {
+		stats.leafEvaluations++;
+		int difference = evaluator.evaluate(board);
+		return board.getCurrentPlayer() == Player.BLACK ? difference : -difference;
+	}
+}
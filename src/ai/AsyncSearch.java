@@ -0,0 +1,199 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.Pair;
+
+/**
+ * Runs an AlphaBeta search on a background thread, so that a GUI stays
+ * responsive while the engine thinks. Every search works on its own copy
+ * of the board, and returns a Future that stops the search when it is
+ * cancelled.
+ *
+ * While the opponent is thinking, the engine can ponder: search the
+ * position after the reply it expects, until told to stop. If the guess
+ * was right, everything that search learned is still in the
+ * transposition table, and the real search gets through its first
+ * iterations almost for free.
+ */
+public class AsyncSearch {
+
+	// Upper limit on pondering, in case nobody ever stops it
+	public final static long PONDER_TIME = 60000;
+
+	/**
+	 * Told, on the search thread, about the result of a search that ran
+	 * to the end, or about what made it fail.
+	 */
+	public interface Listener {
+		public void searchFinished(Pair<Move,Integer> result);
+		public void searchFailed(Throwable cause);
+	}
+
+	AlphaBeta engine;
+	ExecutorService executor;
+	SearchTask pondering;
+	Move guess;
+	int ponders;
+	int ponderHits;
+
+	public AsyncSearch(AlphaBeta engine) {
+
+		this.engine = engine;
+		this.executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, "search");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	public AlphaBeta getEngine() {
+		return engine;
+	}
+
+	/**
+	 * Starts searching the board for up to budget milliseconds, and
+	 * returns at once. Changes to the board afterwards don't affect the
+	 * search. Cancelling the Future stops the search, and the listener
+	 * (which may be null) is then not called; otherwise it is told either
+	 * the result or why there is none.
+	 */
+	public Future<Pair<Move,Integer>> think(Board board, long budget, Listener listener) {
+		stopPondering(null);
+		SearchTask task = new SearchTask(board.copy(), budget, new AtomicBoolean(), listener);
+		executor.execute(task);
+		return task;
+	}
+
+	/**
+	 * Starts pondering, on the assumption that the opponent will reply
+	 * to the board's position with guess. Does nothing if the guess is
+	 * null or not a legal move.
+	 */
+	public void ponder(Board board, Move guess) {
+		stopPondering(null);
+		if (guess == null) {
+			return;
+		}
+		Board copy = board.copy();
+		if (!copy.doMove(guess.getX(), guess.getY())) {
+			return;
+		}
+		this.guess = guess;
+		this.pondering = new SearchTask(copy, PONDER_TIME, new AtomicBoolean(), null);
+		ponders++;
+		executor.execute(pondering);
+	}
+
+	/**
+	 * Stops pondering, if the engine was, and returns whether it had
+	 * guessed the opponent's actual reply, which may be null if unknown.
+	 */
+	public boolean stopPondering(Move reply) {
+		if (pondering == null) {
+			return false;
+		}
+		pondering.cancel(false);
+		pondering = null;
+		boolean hit = reply != null && reply.getX() == guess.getX() && reply.getY() == guess.getY();
+		if (hit) {
+			ponderHits++;
+		}
+		guess = null;
+		return hit;
+	}
+
+	public boolean isPondering() {
+		return pondering != null;
+	}
+
+	/**
+	 * Returns how many times the engine has pondered, and how many of
+	 * those times it guessed the reply right.
+	 */
+	public int getPonders() {
+		return ponders;
+	}
+
+	public int getPonderHits() {
+		return ponderHits;
+	}
+
+	Pair<Move,Integer> search(Board board, long budget, AtomicBoolean stop) {
+		engine.stop = stop;
+		engine.evaluator.attach(board);
+		try {
+			return engine.deepen(board, budget);
+		} finally {
+			engine.evaluator.detach(board);
+		}
+	}
+
+	/**
+	 * Stops whatever is running and releases the search thread.
+	 */
+	public void shutdown() {
+		stopPondering(null);
+		executor.shutdownNow();
+	}
+
+	/**
+	 * A search with a stop flag of its own, so that cancelling one task
+	 * can never stop the next, nor be undone by it starting.
+	 */
+	private class SearchTask extends FutureTask<Pair<Move,Integer>> {
+
+		AtomicBoolean stop;
+		Listener listener;
+
+		SearchTask(final Board board, final long budget, final AtomicBoolean stop, Listener listener) {
+
+			super(new Callable<Pair<Move,Integer>>() {
+				@Override
+				public Pair<Move,Integer> call() {
+					return search(board, budget, stop);
+				}
+			});
+			this.stop = stop;
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean cancel(boolean mayInterruptIfRunning) {
+			stop.set(true);
+			return super.cancel(mayInterruptIfRunning);
+		}
+
+		@Override
+		protected void done() {
+			if (listener == null || isCancelled()) {
+				return;
+			}
+			Pair<Move,Integer> result;
+			try {
+				result = get();
+			} catch (ExecutionException e) {
+				listener.searchFailed(e.getCause());
+				return;
+			} catch (InterruptedException e) {
+				// Never thrown once the task is done
+				Thread.currentThread().interrupt();
+				return;
+			}
+			listener.searchFinished(result);
+		}
+	}
+}
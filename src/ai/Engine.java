@@ -0,0 +1,34 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import util.Pair;
+
+/**
+ * Something that picks moves, configured with whatever limits it needs
+ * beforehand, so that callers such as the GUI or a tournament can play
+ * any engine the same way.
+ */
+public interface Engine {
+
+	/**
+	 * Returns the best Move for the current player along with the score
+	 * difference, in the same convention as GomokuAI.minimax: large
+	 * positive scores are good for BLACK, large negative scores are good
+	 * for WHITE. The board is left as it was found.
+	 */
+	public Pair<Move,Integer> think(Board board);
+
+	/**
+	 * Forgets anything learned about earlier games, so that the next game
+	 * is played exactly as it would be by a fresh engine.
+	 */
+	public void newGame();
+
+	/**
+	 * Returns the number of nodes visited by the last call to think(), or
+	 * 0 if the engine doesn't count them.
+	 */
+	public long getNodes();
+}
@@ -0,0 +1,77 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Player;
+
+/**
+ * Orders moves by the static evaluation of the position each one leads
+ * to. Evaluating every child can be expensive, so only nodes closer to
+ * the root than maxPly are ordered; deeper nodes are left untouched.
+ */
+public class EvaluationOrdering implements MoveOrdering {
+
+	Evaluator evaluator;
+	int maxPly;
+	// Scratch space for the scores of the moves being ordered
+	int[] scores;
+
+	public EvaluationOrdering(int maxPly) {
+
+		this(new SequenceEvaluator(), maxPly);
+	}
+
+	/**
+	 * Orders with the given evaluator, which must be the one attached to
+	 * the board being searched if it keeps incremental state.
+	 */
+	public EvaluationOrdering(Evaluator evaluator, int maxPly) {
+
+		this.evaluator = evaluator;
+		this.maxPly = maxPly;
+		this.scores = new int[0];
+	}
+
+	@Override
+	public void order(Board board, int[] moves, int count, int ply) {
+		if (ply >= maxPly || count < 2) {
+			return;
+		}
+		if (scores.length < count) {
+			scores = new int[moves.length];
+		}
+		int player = board.getCurrentPlayer();
+		int dimY = board.getDimY();
+		for (int i = 0; i < count; i++) {
+			board.doMove(moves[i] / dimY, moves[i] % dimY);
+			int difference = evaluator.evaluate(board);
+			scores[i] = player == Player.BLACK ? difference : -difference;
+			board.undoMove();
+		}
+		sort(moves, scores, count);
+	}
+
+	@Override
+	public void newSearch() {}
+
+	@Override
+	public void cutoff(Board board, int move, int depth, int ply) {}
+
+	/**
+	 * Insertion sorts the first count moves by descending score. Move
+	 * lists are short, and this keeps equal moves in generation order.
+	 */
+	static void sort(int[] moves, int[] scores, int count) {
+		for (int i = 1; i < count; i++) {
+			int move = moves[i];
+			int score = scores[i];
+			int j = i - 1;
+			while (j >= 0 && scores[j] < score) {
+				moves[j+1] = moves[j];
+				scores[j+1] = scores[j];
+				j--;
+			}
+			moves[j+1] = move;
+			scores[j+1] = score;
+		}
+	}
+}
@@ -0,0 +1,29 @@
+package ai;
+
+import gomoku.Board;
+
+/**
+ * A static evaluation function for the search. Scores follow the same
+ * convention as GomokuAI.minimax: large positive scores are good for
+ * BLACK, large negative scores are good for WHITE.
+ */
+public interface Evaluator {
+
+	/**
+	 * The score of a position that is won outright.
+	 */
+	public final static int WIN = 100000;
+	
+	/**
+	 * Called before a search starts working on the board, so that an
+	 * evaluator can build whatever state it keeps about the position.
+	 */
+	public void attach(Board board);
+	
+	/**
+	 * Called once the search is done with the board.
+	 */
+	public void detach(Board board);
+	
+	public int evaluate(Board board);
+}
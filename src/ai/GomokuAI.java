@@ -60,9 +60,16 @@ public class GomokuAI {
 	}
 	
 	/**
-	 * An implementation of the minimax algorithm.
+	 * An implementation of the minimax algorithm. A position where the
+	 * previous move made five is not searched any further, and scores
+	 * Evaluator.WIN for the winner.
 	 */
 	public static Pair<Move,Integer> minimax(Board board, int depth) {
+		int winner = board.getWinner();
+		if (winner != Player.NONE) {
+			return new Pair<Move,Integer>(null,
+					winner == Player.BLACK ? Evaluator.WIN : -Evaluator.WIN);
+		}
 		if (depth > 0) {
 			Set<Move> children = collectReplies(
 					findSequences(board, Player.BLACK),
@@ -103,6 +110,16 @@ public class GomokuAI {
 		}
 	}
 	
+	/**
+	 * Same contract as minimax, but prunes with alpha-beta so that
+	 * much deeper searches are affordable. Note that minimax evaluates
+	 * one ply beyond its depth, so minimax(board, d) searches about as
+	 * deep as alphabeta(board, d+1).
+	 */
+	public static Pair<Move,Integer> alphabeta(Board board, int depth) {
+		return new AlphaBeta(new SequenceEvaluator(), new EvaluationOrdering(2)).search(board, depth);
+	}
+	
 	
 	/**
 	 * Evaluates the board, considering both players' pieces. Returns an array
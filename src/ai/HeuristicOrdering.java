@@ -0,0 +1,149 @@
+package ai;
+
+import gomoku.BitBoard;
+import gomoku.Board;
+import gomoku.Player;
+import util.IntLongMap;
+
+/**
+ * Orders moves without searching or evaluating them, in three tiers:
+ *
+ *   1. threats: moves that make an open three or better, or stop the
+ *      opponent from making one, strongest first and attacks before
+ *      blocks of the same shape;
+ *   2. killers: the two most recent moves at the same ply that caused
+ *      a cutoff, since a move that refutes one sibling often refutes
+ *      the others;
+ *   3. everything else, by the history heuristic (how often and how
+ *      deep a move has caused cutoffs anywhere in the tree), plus the
+ *      scores of the shapes the move makes and blocks on all four
+ *      lines, which decide while the history is still empty.
+ *
+ * The hash move is not this class's business; AlphaBeta puts it in front
+ * of whatever order this gives. Shapes come from an IncrementalEvaluator
+ * attached to the board when there is one, and from Patterns otherwise.
+ * The history only holds the squares that have caused cutoffs, so it is
+ * no bigger on a large board than on a small one.
+ */
+public class HeuristicOrdering implements MoveOrdering {
+
+	private final static int THREAT = 1 << 30;
+	private final static int KILLER = 1 << 29;
+	// History scores are halved whenever one passes this, which also
+	// keeps them below the killers
+	private final static int HISTORY_LIMIT = 1 << 24;
+	private final static int BEST = 0xF;
+
+	IncrementalEvaluator shapes;
+	// Two killer squares per ply, most recent first, -1 if none
+	int[][] killers;
+	// History scores by square << 1 | player, for boards of this many
+	// squares
+	IntLongMap history;
+	int historySize;
+	int[] scores;
+
+	public HeuristicOrdering() {
+
+		this(null);
+	}
+
+	/**
+	 * Orders with the shapes kept by the given evaluator, which must be
+	 * attached to the board being searched.
+	 */
+	public HeuristicOrdering(IncrementalEvaluator shapes) {
+
+		this.shapes = shapes;
+		this.killers = new int[AlphaBeta.MAX_DEPTH+1][2];
+		this.history = new IntLongMap();
+		this.scores = new int[0];
+		clearKillers();
+	}
+
+	@Override
+	public void order(Board board, int[] moves, int count, int ply) {
+		if (count < 2) {
+			return;
+		}
+		if (scores.length < count) {
+			scores = new int[moves.length];
+		}
+		int size = board.getDimX() * board.getDimY();
+		if (historySize != size) {
+			history = new IntLongMap();
+			historySize = size;
+		}
+		int player = board.getCurrentPlayer();
+		int other = Player.other(player);
+		int[] killer = killers[ply];
+		for (int i = 0; i < count; i++) {
+			int square = moves[i];
+			int attack = shapes(board, player, square);
+			int block = shapes(board, other, square);
+			if ((attack & BEST) >= Patterns.OPEN_THREE || (block & BEST) >= Patterns.OPEN_THREE) {
+				scores[i] = THREAT + 2*Patterns.SCORES[attack & BEST] + Patterns.SCORES[block & BEST];
+			} else if (square == killer[0]) {
+				scores[i] = KILLER + 1;
+			} else if (square == killer[1]) {
+				scores[i] = KILLER;
+			} else {
+				scores[i] = (int) history.get(square << 1 | player) + (attack >> 4) + (block >> 4);
+			}
+		}
+		EvaluationOrdering.sort(moves, scores, count);
+	}
+
+	/**
+	 * Returns the best shape the player would make by playing on the
+	 * square in the low four bits (see BEST), and the sum of the scores
+	 * of the shapes made along all four lines in the rest.
+	 */
+	private int shapes(Board board, int player, int square) {
+		BitBoard bits = board.getBitBoard();
+		int dimY = board.getDimY();
+		long all = shapes != null ? shapes.shapes(square) : 0;
+		int best = Patterns.NONE;
+		int sum = 0;
+		for (int o = 0; o < 4; o++) {
+			int shape = shapes != null ? IncrementalEvaluator.shape(all, player, o)
+					: Patterns.shape(bits, player, o, square / dimY, square % dimY);
+			best = Math.max(best, shape);
+			sum += Patterns.SCORES[shape];
+		}
+		return sum << 4 | best;
+	}
+
+	/**
+	 * Forgets the killers, which belong to the positions of the last
+	 * search, and halves the history so that it favours what this search
+	 * finds.
+	 */
+	@Override
+	public void newSearch() {
+		clearKillers();
+		history.halve();
+	}
+
+	private void clearKillers() {
+		for (int[] killer : killers) {
+			killer[0] = -1;
+			killer[1] = -1;
+		}
+	}
+
+	@Override
+	public void cutoff(Board board, int move, int depth, int ply) {
+		int[] killer = killers[ply];
+		if (killer[0] != move) {
+			killer[1] = killer[0];
+			killer[0] = move;
+		}
+		int key = move << 1 | board.getCurrentPlayer();
+		long score = history.get(key) + depth * depth;
+		history.put(key, score);
+		if (score > HISTORY_LIMIT) {
+			history.halve();
+		}
+	}
+}
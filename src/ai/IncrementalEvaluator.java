@@ -0,0 +1,398 @@
+package ai;
+
+import gomoku.BitBoard;
+import gomoku.Board;
+import gomoku.BoardListener;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.SparseBoard;
+
+import java.util.Arrays;
+
+import util.IntLongMap;
+
+/**
+ * An evaluator that keeps its score up to date as moves are made, so
+ * that evaluating a leaf costs the same no matter how many pieces are on
+ * the board.
+ *
+ * For every empty square, each player is credited with the shape (see
+ * Patterns) they would make along each of the four lines by playing
+ * there. A move only changes the shapes of the squares within four steps
+ * of it along those lines, so only they are looked up again on doMove
+ * and undoMove, straight from the board's BitBoard.
+ */
+public class IncrementalEvaluator implements Evaluator, BoardListener {
+
+	// Set in every stored entry, so that a square that is taken keeps its
+	// entry and needn't be looked up afresh when the piece is taken back
+	private final static long STORED = 1L << 32;
+
+	// The entry for x*dimY+y holds the shape each player would make
+	// along each orientation o by playing at (x,y), in four bits at
+	// shift(player, o), or NONE if (x,y) is taken, along with STORED.
+	// Only the squares a piece has come within four steps of are stored.
+	// The rest read as NONE for both players although their lines have
+	// room for five, which changes neither the difference of the scores
+	// nor any shape better than ONE. Entries are kept in dense, an array
+	// over the whole board, unless the board is a SparseBoard, in which
+	// case they are kept in sparse so that they grow with the number of
+	// pieces rather than with the size of the board.
+	long[] dense;
+	IntLongMap sparse;
+	// counts[player][shape] counts the stored (square, orientation) pairs
+	// currently giving player that shape.
+	int[][] counts;
+	// fiveSquares[player] is the number of squares where playing makes
+	// player five. A square that makes five on two lines is still only
+	// one threat, which one move blocks.
+	int[] fiveSquares;
+	// The first threatCounts[player] entries of threats[player] are the
+	// squares where playing makes player an open three or better, so that
+	// the few squares that matter to a ThreatSearch can be found without
+	// a scan of the board.
+	int[][] threats;
+	int[] threatCounts;
+	int[] scores;
+	// Number of fives on the board
+	int fives;
+	Board board;
+	int dimY;
+
+	public IncrementalEvaluator() {
+
+		counts = new int[2][Patterns.SHAPE_COUNT];
+		fiveSquares = new int[2];
+		threats = new int[2][16];
+		threatCounts = new int[2];
+		scores = new int[2];
+	}
+
+	@Override
+	public void attach(Board board) {
+		if (this.board != null) {
+			this.board.removeListener(this);
+		}
+		this.board = board;
+		this.dimY = board.getDimY();
+		if (board instanceof SparseBoard) {
+			dense = null;
+			sparse = new IntLongMap();
+		} else {
+			int size = board.getDimX() * dimY;
+			if (dense == null || dense.length != size) {
+				dense = new long[size];
+			} else {
+				Arrays.fill(dense, 0);
+			}
+			sparse = null;
+		}
+		for (int player = 0; player < 2; player++) {
+			for (int shape = 0; shape < Patterns.SHAPE_COUNT; shape++) {
+				counts[player][shape] = 0;
+			}
+			scores[player] = 0;
+			fiveSquares[player] = 0;
+			threatCounts[player] = 0;
+		}
+		fives = 0;
+		// Only the squares near a piece have any shape, and those are the
+		// ones a move updates, so play the pieces back as if moved
+		BitBoard bits = board.getBitBoard();
+		for (int i = 0; i < board.getMoveCount(); i++) {
+			Move move = board.getMove(i);
+			if (bits.hasFive(move.getPlayer(), move.getX(), move.getY())) {
+				fives++;
+			}
+			update(bits, move.getX(), move.getY());
+		}
+		board.addListener(this);
+	}
+
+	@Override
+	public void detach(Board board) {
+		board.removeListener(this);
+		if (this.board == board) {
+			this.board = null;
+		}
+	}
+
+	/**
+	 * Scores the position from the sum of both players' shapes, but first
+	 * looks for threats that decide the game whatever the rest of the
+	 * board looks like.
+	 */
+	@Override
+	public int evaluate(Board board) {
+		int current = board.getCurrentPlayer();
+		int other = Player.other(current);
+		int sign = current == Player.BLACK ? 1 : -1;
+		if (fives > 0) {
+			// The previous move made five
+			return -sign * WIN;
+		}
+		if (counts[current][Patterns.FIVE] > 0) {
+			// The player to move can make five right away
+			return sign * WIN;
+		}
+		if (fiveSquares[other] > 1) {
+			// The opponent can make five on two squares, and only one can
+			// be blocked
+			return -sign * WIN / 2;
+		}
+		if (counts[current][Patterns.OPEN_FOUR] > 0 && counts[other][Patterns.FIVE] == 0) {
+			// The player to move can make an open four, and has no four
+			// of the opponent's to answer first
+			return sign * WIN / 4;
+		}
+		return scores[Player.BLACK] - scores[Player.WHITE];
+	}
+
+	/**
+	 * Returns how many (square, orientation) pairs give the player the
+	 * given shape, which must not be NONE.
+	 */
+	public int count(int player, int shape) {
+		return counts[player][shape];
+	}
+
+	/**
+	 * Returns the shape the player would make along orientation o by
+	 * playing on the given square (x*dimY + y).
+	 */
+	public int shape(int player, int o, int square) {
+		return shape(shapes(square), player, o);
+	}
+
+	/**
+	 * Returns every shape() of the square at once, for shape(long, int,
+	 * int) to pick from, which saves looking the square up again for
+	 * each.
+	 */
+	public long shapes(int square) {
+		return dense != null ? dense[square] : sparse.get(square);
+	}
+
+	/**
+	 * Returns the shape the player would make along orientation o, out
+	 * of the shapes of a square as shapes() returns them.
+	 */
+	public static int shape(long shapes, int player, int o) {
+		return (int) (shapes >>> shift(player, o)) & 0xF;
+	}
+
+	private static int shift(int player, int o) {
+		return 16*player + 4*o;
+	}
+
+	/**
+	 * Returns how many empty squares would make five for the player.
+	 */
+	public int countFives(int player) {
+		return fiveSquares[player];
+	}
+
+	/**
+	 * Returns how many empty squares would give the player an open three
+	 * or better along some line.
+	 */
+	public int countThreats(int player) {
+		return threatCounts[player];
+	}
+
+	/**
+	 * Returns the index'th of the squares counted by countThreats(), which
+	 * are in no particular order. Playing or taking back a move may
+	 * change which square is where.
+	 */
+	public int threat(int player, int index) {
+		return threats[player][index];
+	}
+
+	/**
+	 * Returns the best shape the player would make, along any of the four
+	 * lines, by playing on the given square (x*dimY + y). Squares that
+	 * are taken have no shape.
+	 */
+	public int bestShape(int player, int square) {
+		return bestShape(shapes(square), player);
+	}
+
+	private static int bestShape(long shapes, int player) {
+		int best = Patterns.NONE;
+		for (int o = 0; o < 4; o++) {
+			best = Math.max(best, shape(shapes, player, o));
+		}
+		return best;
+	}
+
+	/**
+	 * Returns whether any empty square would give the player at least
+	 * the given shape.
+	 */
+	public boolean hasShape(int player, int minShape) {
+		for (int shape = minShape; shape < Patterns.SHAPE_COUNT; shape++) {
+			if (counts[player][shape] > 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void movePlayed(Board board, Move move) {
+		BitBoard bits = board.getBitBoard();
+		if (bits.hasFive(move.getPlayer(), move.getX(), move.getY())) {
+			fives++;
+		}
+		update(bits, move.getX(), move.getY());
+	}
+
+	@Override
+	public void moveUndone(Board board, Move move) {
+		BitBoard bits = board.getBitBoard();
+		update(bits, move.getX(), move.getY());
+		// The piece is already gone, so check whether it would have made five
+		if (wasFive(bits, move)) {
+			fives--;
+		}
+	}
+
+	private boolean wasFive(BitBoard bits, Move move) {
+		for (int o = 0; o < 4; o++) {
+			long w = bits.window(move.getPlayer(), o, move.getX(), move.getY(), 4) | Patterns.CENTER;
+			if ((w & (w >>> 1) & (w >>> 2) & (w >>> 3) & (w >>> 4)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Looks up the shapes of every square within four steps of (x,y)
+	 * along the line through it, for each of the four lines.
+	 */
+	void update(BitBoard bits, int x, int y) {
+		for (int o = 0; o < 4; o++) {
+			// Read 17 squares at once, and slide a 9 square window along them
+			long black = bits.window(Player.BLACK, o, x, y, 8);
+			long white = bits.window(Player.WHITE, o, x, y, 8);
+			long onBoard = bits.window(BitBoard.ON_BOARD, o, x, y, 8);
+			for (int step = -4; step <= 4; step++) {
+				if ((onBoard & (1L << (step + 8))) == 0) {
+					continue;
+				}
+				int squareX = x + step*BitBoard.STEP_X[o];
+				int squareY = y + step*BitBoard.STEP_Y[o];
+				int shift = step + 4;
+				long ownBlack = (black >>> shift) & Patterns.WINDOW;
+				long ownWhite = (white >>> shift) & Patterns.WINDOW;
+				if (((ownBlack | ownWhite) & Patterns.CENTER) != 0) {
+					set(bits, o, squareX, squareY, Patterns.NONE, Patterns.NONE);
+				} else {
+					long offBoard = ~(onBoard >>> shift) & Patterns.WINDOW;
+					set(bits, o, squareX, squareY, Patterns.shape(ownBlack, ownWhite | offBoard),
+							Patterns.shape(ownWhite, ownBlack | offBoard));
+				}
+			}
+		}
+	}
+
+	/**
+	 * Records the shapes BLACK and WHITE would make along orientation o
+	 * by playing at (x,y).
+	 */
+	private void set(BitBoard bits, int o, int x, int y, int black, int white) {
+		int square = x*dimY + y;
+		long old = shapes(square);
+		long mask = 0xFL << shift(Player.BLACK, o) | 0xFL << shift(Player.WHITE, o);
+		long updated = old & ~mask | (long) black << shift(Player.BLACK, o)
+				| (long) white << shift(Player.WHITE, o) | STORED;
+		if (updated == old) {
+			return;
+		}
+		if (old == 0 && bits.get(x, y) == Player.NONE) {
+			// No piece has come within reach of the square before, so its
+			// other lines are looked up too, as they may have room for five
+			for (int line = 0; line < 4; line++) {
+				if (line != o) {
+					updated |= (long) Patterns.shape(bits, Player.BLACK, line, x, y) << shift(Player.BLACK, line)
+							| (long) Patterns.shape(bits, Player.WHITE, line, x, y) << shift(Player.WHITE, line);
+				}
+			}
+		}
+		if (dense != null) {
+			dense[square] = updated;
+		} else {
+			sparse.put(square, updated);
+		}
+		if (old != 0) {
+			changed(Player.BLACK, square, old, updated, o);
+			changed(Player.WHITE, square, old, updated, o);
+			return;
+		}
+		// Account for the lines one at a time, as if each had changed alone
+		long partial = old;
+		for (int line = 0; line < 4; line++) {
+			long lineMask = 0xFL << shift(Player.BLACK, line) | 0xFL << shift(Player.WHITE, line);
+			long next = partial & ~lineMask | updated & lineMask;
+			changed(Player.BLACK, square, partial, next, line);
+			changed(Player.WHITE, square, partial, next, line);
+			partial = next;
+		}
+	}
+
+	/**
+	 * Accounts for the player's shape along the line through the square
+	 * having changed from that in old to that in updated, if it has. The
+	 * two differ along no other line.
+	 */
+	private void changed(int player, int square, long old, long updated, int line) {
+		int before = shape(old, player, line);
+		int after = shape(updated, player, line);
+		if (before == after) {
+			return;
+		}
+		counts[player][before]--;
+		counts[player][after]++;
+		scores[player] += Patterns.SCORES[after] - Patterns.SCORES[before];
+		if (before < Patterns.OPEN_THREE && after < Patterns.OPEN_THREE) {
+			return;
+		}
+		// The square's best shape may have crossed a threshold
+		int oldBest = bestShape(old, player);
+		int newBest = bestShape(updated, player);
+		if (oldBest == Patterns.FIVE && newBest != Patterns.FIVE) {
+			fiveSquares[player]--;
+		} else if (newBest == Patterns.FIVE && oldBest != Patterns.FIVE) {
+			fiveSquares[player]++;
+		}
+		if (oldBest >= Patterns.OPEN_THREE && newBest < Patterns.OPEN_THREE) {
+			removeThreat(player, square);
+		} else if (newBest >= Patterns.OPEN_THREE && oldBest < Patterns.OPEN_THREE) {
+			addThreat(player, square);
+		}
+	}
+
+	private void addThreat(int player, int square) {
+		if (threatCounts[player] == threats[player].length) {
+			threats[player] = Arrays.copyOf(threats[player], 2 * threatCounts[player]);
+		}
+		threats[player][threatCounts[player]++] = square;
+	}
+
+	/**
+	 * Removes a square from the player's threats by moving the last one
+	 * into its place. There are seldom more than a few dozen.
+	 */
+	private void removeThreat(int player, int square) {
+		int[] list = threats[player];
+		int last = --threatCounts[player];
+		for (int i = 0; i < last; i++) {
+			if (list[i] == square) {
+				list[i] = list[last];
+				return;
+			}
+		}
+	}
+}
@@ -0,0 +1,31 @@
+package ai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event spanning one iteration of a search, to one depth. Aborted
+ * iterations are recorded too, since the time they took is spent all
+ * the same.
+ */
+@Name("gomoku.Iteration")
+@Label("Search Iteration")
+@Category("Gomoku")
+@Description("One iteration of a search, to a single depth")
+public class IterationEvent extends Event {
+
+	@Label("Depth")
+	int depth;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Aborted")
+	boolean aborted;
+
+	@Label("Helper")
+	int helper;
+}
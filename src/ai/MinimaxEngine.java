@@ -0,0 +1,36 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import util.Pair;
+
+/**
+ * The original engine, GomokuAI.minimax, to a fixed depth.
+ */
+public class MinimaxEngine implements Engine {
+
+	int depth;
+
+	public MinimaxEngine(int depth) {
+
+		this.depth = depth;
+	}
+
+	@Override
+	public Pair<Move,Integer> think(Board board) {
+		if (board.getMoveCount() == 0) {
+			// minimax only considers replies to pieces already on the board
+			return GomokuAI.bestMove(board);
+		}
+		return GomokuAI.minimax(board, depth);
+	}
+
+	@Override
+	public void newGame() {}
+
+	@Override
+	public long getNodes() {
+		return 0;
+	}
+}
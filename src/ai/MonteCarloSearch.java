@@ -0,0 +1,583 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.BoardSnapshot;
+import gomoku.Move;
+import gomoku.Player;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongFieldUpdater;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
+
+import util.Pair;
+
+/**
+ * Monte Carlo tree search with UCT, an alternative to the alpha-beta
+ * engines. Each playout walks down the tree, always taking the child
+ * with the best upper confidence bound, adds the children of the node
+ * it ends on, and scores that node by playing a few greedy moves and
+ * handing the result to an IncrementalEvaluator. The score, turned into
+ * a chance of winning, is added to every node on the way back up, and
+ * the move played is the root's most visited child.
+ *
+ * Any number of threads grow the same tree. Visits and scores are
+ * updated with atomic adds rather than locks, and a thread walking
+ * through a node counts VIRTUAL_LOSS lost visits to it until its playout
+ * is done, which steers the other threads onto other lines meanwhile.
+ *
+ * Children are the squares next to the pieces on the board, at most
+ * MAX_CHILDREN of them, ranked by the shapes they make and block. That
+ * rank also biases the first visits. A side that can make five only
+ * has that move, and one facing five only has the blocks.
+ *
+ * The tree is kept from one call of think() to the next, and when the
+ * board has moved on along moves the tree has already expanded, the
+ * subtree under them is searched further rather than started afresh.
+ */
+public class MonteCarloSearch implements Engine {
+
+	public final static int DEFAULT_ITERATIONS = 20000;
+	public final static int DEFAULT_ROLLOUT = 2;
+	public final static double DEFAULT_EXPLORATION = 0.7;
+	public final static int MAX_CHILDREN = 24;
+	public final static int VIRTUAL_LOSS = 3;
+	// A leaf's children are added on this playout through it
+	public final static int EXPAND_VISITS = 2;
+	// The tree stops growing at this many nodes, and only keeps playing
+	// out from its leaves
+	public final static int MAX_NODES = 4000000;
+	// Evaluator scores are squashed into a chance of winning by a
+	// logistic curve of this scale
+	final static double SCALE = 1000;
+	// Scores are summed in fixed point, with this many units per win
+	final static long ONE = 1 << 16;
+	final static double PRIOR_WEIGHT = 0.5;
+
+	int threads;
+	ForkJoinPool pool;
+	Worker[] workers;
+	long timeLimit;
+	int iterations;
+	int rollout;
+	double exploration;
+
+	Node root;
+	// The moves that lead to root
+	List<Move> rootHistory;
+	AtomicInteger nodeCount;
+	long playouts;
+
+	public MonteCarloSearch() {
+
+		this(1);
+	}
+
+	public MonteCarloSearch(int threads) {
+
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		this.threads = threads;
+		this.pool = new ForkJoinPool(threads);
+		this.iterations = DEFAULT_ITERATIONS;
+		this.rollout = DEFAULT_ROLLOUT;
+		this.exploration = DEFAULT_EXPLORATION;
+		this.nodeCount = new AtomicInteger();
+		this.workers = new Worker[threads];
+		newGame();
+	}
+
+	/**
+	 * Makes think() search for the given number of milliseconds, or if
+	 * that is 0, for a fixed number of playouts.
+	 */
+	public void setTimeLimit(long budget) {
+		this.timeLimit = budget;
+	}
+
+	/**
+	 * Makes think() run the given number of playouts, shared between the
+	 * threads, unless a time limit is set.
+	 */
+	public void setIterations(int iterations) {
+		this.iterations = iterations;
+	}
+
+	/**
+	 * Sets how many greedy moves each playout plays from the leaf before
+	 * evaluating; 0 evaluates the leaf itself.
+	 */
+	public void setRollout(int plies) {
+		this.rollout = plies;
+	}
+
+	public void setExploration(double exploration) {
+		this.exploration = exploration;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Returns the number of playouts run by the last call to think().
+	 */
+	@Override
+	public long getNodes() {
+		return playouts;
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 */
+	public int getTreeSize() {
+		return nodeCount.get();
+	}
+
+	/**
+	 * Drops the tree, and restarts every thread's random numbers.
+	 */
+	@Override
+	public void newGame() {
+		root = null;
+		rootHistory = null;
+		nodeCount.set(0);
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Worker(i);
+		}
+	}
+
+	/**
+	 * Releases the worker threads. The search cannot be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	@Override
+	public Pair<Move,Integer> think(Board board) {
+		playouts = 0;
+		if (board.getMoveCount() == 0) {
+			// There is nothing to play next to yet
+			return GomokuAI.bestMove(board);
+		}
+		reuse(board);
+		Worker first = workers[0];
+		first.attach(board);
+		try {
+			first.expand(root, board);
+		} finally {
+			first.detach(board);
+		}
+		Node[] children = root.children;
+		if (children.length == 0) {
+			return GomokuAI.bestMove(board);
+		}
+		if (children.length > 1) {
+			run(board);
+		}
+		Node best = children[0];
+		for (Node child : children) {
+			if (child.visits > best.visits) {
+				best = child;
+			}
+		}
+		int dimY = board.getDimY();
+		Move move = new Move(board.getCurrentPlayer(), best.square / dimY, best.square % dimY);
+		int score = score(best);
+		return new Pair<Move,Integer>(move, board.getCurrentPlayer() == Player.BLACK ? score : -score);
+	}
+
+	/**
+	 * Moves the root down to the board's position if the tree already
+	 * holds it, and starts a new tree otherwise.
+	 */
+	void reuse(Board board) {
+		List<Move> history = board.getMoveHistory();
+		Node node = null;
+		if (root != null && startsWith(history, rootHistory)) {
+			node = root;
+			int dimY = board.getDimY();
+			for (int i = rootHistory.size(); i < history.size() && node != null; i++) {
+				Move move = history.get(i);
+				node = node.child(move.getX()*dimY + move.getY());
+			}
+		}
+		if (node == null) {
+			node = new Node(-1, Player.other(board.getCurrentPlayer()));
+		}
+		nodeCount.set(size(node));
+		root = node;
+		rootHistory = new ArrayList<Move>(history);
+	}
+
+	/**
+	 * Returns whether history begins with the moves of prefix. Moves are
+	 * compared square by square, since Move.equals only compares hash
+	 * codes, which different moves can share.
+	 */
+	static boolean startsWith(List<Move> history, List<Move> prefix) {
+		if (prefix.size() > history.size()) {
+			return false;
+		}
+		for (int i = 0; i < prefix.size(); i++) {
+			Move a = history.get(i);
+			Move b = prefix.get(i);
+			if (a.getX() != b.getX() || a.getY() != b.getY() || a.getPlayer() != b.getPlayer()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the number of nodes in the subtree under node.
+	 */
+	static int size(Node node) {
+		int size = 0;
+		List<Node> stack = new ArrayList<Node>();
+		stack.add(node);
+		while (!stack.isEmpty()) {
+			Node next = stack.remove(stack.size()-1);
+			size++;
+			if (next.children != null) {
+				for (Node child : next.children) {
+					stack.add(child);
+				}
+			}
+		}
+		return size;
+	}
+
+	/**
+	 * Runs playouts on every thread until the time or playouts run out.
+	 */
+	private void run(Board board) {
+		final BoardSnapshot snapshot = board.snapshot();
+		final AtomicInteger remaining = new AtomicInteger(timeLimit > 0 ? Integer.MAX_VALUE : iterations);
+		final AtomicBoolean stop = new AtomicBoolean();
+		final long deadline = System.nanoTime() + timeLimit * 1000000L;
+		List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+		for (int i = 0; i < threads; i++) {
+			final Worker worker = workers[i];
+			results.add(pool.submit(new Callable<Integer>() {
+				@Override
+				public Integer call() {
+					Board copy = snapshot.toBoard();
+					worker.attach(copy);
+					try {
+						int count = 0;
+						while (!stop.get() && remaining.getAndDecrement() > 0) {
+							worker.playout(root, copy);
+							count++;
+							if (timeLimit > 0 && (count & 63) == 0 && System.nanoTime() >= deadline) {
+								stop.set(true);
+							}
+						}
+						return count;
+					} finally {
+						worker.detach(copy);
+					}
+				}
+			}));
+		}
+		try {
+			for (Future<Integer> result : results) {
+				playouts += result.get();
+			}
+		} catch (InterruptedException e) {
+			stop.set(true);
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			stop.set(true);
+			throw new RuntimeException(e.getCause());
+		}
+	}
+
+	/**
+	 * Returns the node's average result, for the player who moved into
+	 * it, in evaluator units.
+	 */
+	static int score(Node node) {
+		if (node.visits == 0) {
+			return 0;
+		}
+		double p = (double) node.total / ONE / node.visits;
+		p = Math.min(Math.max(p, 1e-6), 1 - 1e-6);
+		double score = SCALE * Math.log(p / (1 - p));
+		return (int) Math.max(-Evaluator.WIN, Math.min(Evaluator.WIN, score));
+	}
+
+	/**
+	 * A position in the tree, reached by the player having moved on the
+	 * square (x*dimY + y).
+	 */
+	static class Node {
+
+		static final AtomicIntegerFieldUpdater<Node> VISITS =
+				AtomicIntegerFieldUpdater.newUpdater(Node.class, "visits");
+		static final AtomicLongFieldUpdater<Node> TOTAL =
+				AtomicLongFieldUpdater.newUpdater(Node.class, "total");
+		static final AtomicReferenceFieldUpdater<Node,Node[]> CHILDREN =
+				AtomicReferenceFieldUpdater.newUpdater(Node.class, Node[].class, "children");
+
+		final int square;
+		final int player;
+		// Share of the node's siblings' rank, in [0, 1]
+		double prior;
+		// Visits, including those of playouts still under way
+		volatile int visits;
+		// Sum of the results of finished visits, for player, in units of ONE
+		volatile long total;
+		// Null until expanded
+		volatile Node[] children;
+		// Set once the move is known to have made five
+		volatile boolean won;
+
+		Node(int square, int player) {
+
+			this.square = square;
+			this.player = player;
+		}
+
+		/**
+		 * Returns the child for the given square, or null if the node has
+		 * not been expanded or the square isn't one of its children.
+		 */
+		Node child(int square) {
+			Node[] children = this.children;
+			if (children != null) {
+				for (Node child : children) {
+					if (child.square == square) {
+						return child;
+					}
+				}
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * The state of one thread's playouts, kept between searches.
+	 */
+	class Worker {
+
+		IncrementalEvaluator shapes;
+		MoveGenerator generator;
+		Random random;
+		int[] moves;
+		int[] ranks;
+		Node[] path;
+
+		Worker(int seed) {
+
+			shapes = new IncrementalEvaluator();
+			generator = new MoveGenerator();
+			random = new Random(seed);
+			path = new Node[64];
+		}
+
+		void attach(Board board) {
+			if (moves == null) {
+				moves = new int[0];
+				ranks = new int[0];
+			}
+			shapes.attach(board);
+		}
+
+		void detach(Board board) {
+			shapes.detach(board);
+		}
+
+		/**
+		 * Runs one playout from the root, which is the board's position,
+		 * and leaves the board as it was.
+		 */
+		void playout(Node root, Board board) {
+			int dimY = board.getDimY();
+			int length = 0;
+			Node node = root;
+			Node.VISITS.addAndGet(node, VIRTUAL_LOSS);
+			path[length++] = node;
+			while (node.children != null && node.children.length > 0 && !node.won) {
+				node = select(node);
+				Node.VISITS.addAndGet(node, VIRTUAL_LOSS);
+				if (length == path.length) {
+					Node[] longer = new Node[2*length];
+					System.arraycopy(path, 0, longer, 0, length);
+					path = longer;
+				}
+				path[length++] = node;
+				board.doMove(node.square / dimY, node.square % dimY);
+				if (board.isWon()) {
+					node.won = true;
+				}
+			}
+			double value;
+			if (node.won) {
+				value = 1;
+			} else {
+				// Its visits so far, and this one's virtual loss
+				if (node.visits - VIRTUAL_LOSS >= EXPAND_VISITS - 1 && nodeCount.get() < MAX_NODES) {
+					expand(node, board);
+				}
+				value = simulate(board, node.player);
+			}
+			for (int i = length-1; i >= 0; i--) {
+				Node step = path[i];
+				Node.TOTAL.addAndGet(step, (long) ((step.player == node.player ? value : 1 - value) * ONE));
+				Node.VISITS.addAndGet(step, 1 - VIRTUAL_LOSS);
+				path[i] = null;
+				if (i > 0) {
+					board.undoMove();
+				}
+			}
+		}
+
+		/**
+		 * Returns the child with the best upper confidence bound, for the
+		 * player to move at the node.
+		 */
+		Node select(Node node) {
+			Node[] children = node.children;
+			double log = Math.log(Math.max(1, node.visits));
+			Node best = null;
+			double bestBound = Double.NEGATIVE_INFINITY;
+			for (Node child : children) {
+				if (child.won) {
+					return child;
+				}
+				int visits = child.visits;
+				double bound;
+				if (visits == 0) {
+					// Children are ranked, so the first unvisited one is the
+					// likeliest
+					bound = 1e9 + child.prior;
+				} else {
+					double mean = (double) child.total / ONE / visits;
+					bound = mean + exploration * Math.sqrt(log / visits) + PRIOR_WEIGHT * child.prior / (visits + 1);
+				}
+				if (bound > bestBound) {
+					best = child;
+					bestBound = bound;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Adds the node's children, unless another thread got there first.
+		 */
+		void expand(Node node, Board board) {
+			if (node.children != null) {
+				return;
+			}
+			int player = board.getCurrentPlayer();
+			int count = candidates(board);
+			int max = count > 0 ? Math.max(1, ranks[0]) : 1;
+			Node[] children = new Node[Math.min(count, MAX_CHILDREN)];
+			for (int i = 0; i < children.length; i++) {
+				children[i] = new Node(moves[i], player);
+				children[i].prior = (double) ranks[i] / max;
+			}
+			if (Node.CHILDREN.compareAndSet(node, null, children)) {
+				nodeCount.addAndGet(children.length);
+			}
+		}
+
+		/**
+		 * Fills moves with the squares worth playing for the player to
+		 * move, best first, and ranks with their rank. Returns how many
+		 * there are.
+		 */
+		int candidates(Board board) {
+			// Room for a whole rollout more, so that a playout doesn't
+			// grow the lists on every move it plays
+			if (moves.length < MoveGenerator.capacity(board, 0)) {
+				moves = new int[MoveGenerator.capacity(board, rollout)];
+				ranks = new int[moves.length];
+			}
+			int player = board.getCurrentPlayer();
+			int other = Player.other(player);
+			int count = generator.generate(board, moves);
+			// Make five if possible, or else block the opponent's
+			int forced = shapes.count(player, Patterns.FIVE) > 0 ? player
+					: shapes.count(other, Patterns.FIVE) > 0 ? other : Player.NONE;
+			int kept = 0;
+			for (int i = 0; i < count; i++) {
+				int square = moves[i];
+				if (forced != Player.NONE && shapes.bestShape(forced, square) != Patterns.FIVE) {
+					continue;
+				}
+				moves[kept] = square;
+				ranks[kept++] = rank(player, square) + rank(other, square) / 2;
+				if (forced == player) {
+					break;
+				}
+			}
+			EvaluationOrdering.sort(moves, ranks, kept);
+			return kept;
+		}
+
+		/**
+		 * Returns the sum of the scores of the shapes the player would
+		 * make by playing on the square.
+		 */
+		int rank(int player, int square) {
+			long all = shapes.shapes(square);
+			int sum = 1;
+			for (int o = 0; o < 4; o++) {
+				sum += Patterns.SCORES[IncrementalEvaluator.shape(all, player, o)];
+			}
+			return sum;
+		}
+
+		/**
+		 * Plays up to rollout greedy moves from the board's position,
+		 * evaluates where they lead, and takes them back. Returns the
+		 * chance of winning of the given player.
+		 */
+		double simulate(Board board, int player) {
+			int played = 0;
+			double value = -1;
+			while (played < rollout) {
+				int count = candidates(board);
+				if (count == 0) {
+					break;
+				}
+				// The better of two of the top few, so that playouts through
+				// the same leaf don't all play the same line
+				int top = Math.min(count, 4);
+				int a = random.nextInt(top);
+				int b = random.nextInt(top);
+				int square = moves[Math.min(a, b)];
+				board.doMove(square / board.getDimY(), square % board.getDimY());
+				played++;
+				if (board.isWon()) {
+					value = board.getLastMove().getPlayer() == player ? 1 : 0;
+					break;
+				}
+			}
+			if (value < 0) {
+				int score = shapes.evaluate(board);
+				if (player != Player.BLACK) {
+					score = -score;
+				}
+				value = 1 / (1 + Math.exp(-score / SCALE));
+			}
+			for (int i = 0; i < played; i++) {
+				board.undoMove();
+			}
+			return value;
+		}
+	}
+}
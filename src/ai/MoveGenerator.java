@@ -0,0 +1,67 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+
+/**
+ * Generates candidate moves without allocating. Candidates are the empty
+ * squares next to any piece on the board, which covers every square
+ * GomokuAI.collectReplies would suggest. They are written into a caller
+ * supplied int[] as packed square indices (x*dimY + y), most recently
+ * played neighbourhoods first, and de-duplicated with a bitset that is
+ * cleared again as the list is finished.
+ */
+public class MoveGenerator {
+
+	private final static int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+	private final static int[] DY = {0, -1, -1, -1, 0, 1, 1, 1};
+
+	long[] seen;
+
+	/**
+	 * Returns how much room generate() needs on the board, and on every
+	 * board up to the given number of moves later: eight neighbours for
+	 * each piece, and never more than there are squares. A search only
+	 * needs this much, not room for every square.
+	 */
+	public static int capacity(Board board, int moves) {
+		long pieces = board.getMoveCount() + moves;
+		return (int) Math.min((long) board.getDimX() * board.getDimY(), 8 * pieces);
+	}
+
+	/**
+	 * Fills moves with the candidate moves for the player to move, and
+	 * returns how many there are. moves must have room for at least
+	 * capacity(board, 0) of them.
+	 */
+	public int generate(Board board, int[] moves) {
+		int dimX = board.getDimX();
+		int dimY = board.getDimY();
+		int words = (dimX*dimY + 63) >>> 6;
+		if (seen == null || seen.length < words) {
+			seen = new long[words];
+		}
+		int count = 0;
+		for (int i = board.getMoveCount()-1; i >= 0; i--) {
+			Move move = board.getMove(i);
+			for (int d = 0; d < 8; d++) {
+				int x = move.getX() + DX[d];
+				int y = move.getY() + DY[d];
+				if (x < 0 || x >= dimX || y < 0 || y >= dimY) {
+					continue;
+				}
+				int square = x*dimY + y;
+				long bit = 1L << square;
+				if ((seen[square >>> 6] & bit) == 0 && board.get(x, y) == Player.NONE) {
+					seen[square >>> 6] |= bit;
+					moves[count++] = square;
+				}
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			seen[moves[i] >>> 6] = 0;
+		}
+		return count;
+	}
+}
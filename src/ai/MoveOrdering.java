@@ -0,0 +1,42 @@
+package ai;
+
+import gomoku.Board;
+
+/**
+ * Decides the order in which a search visits the children of a node.
+ * Alpha-beta prunes the most when the best reply is searched first, so
+ * a good ordering directly shrinks the tree.
+ */
+public interface MoveOrdering {
+
+	/**
+	 * Leaves the moves in whatever order they were collected in.
+	 */
+	public final static MoveOrdering NONE = new MoveOrdering() {
+		@Override
+		public void order(Board board, int[] moves, int count, int ply) {}
+		@Override
+		public void newSearch() {}
+		@Override
+		public void cutoff(Board board, int move, int depth, int ply) {}
+	};
+
+	/**
+	 * Reorders the first count moves in place, best candidates first.
+	 * Moves are packed square indices (x*dimY + y), and the ply is the
+	 * distance from the root of the search.
+	 */
+	public void order(Board board, int[] moves, int count, int ply);
+
+	/**
+	 * Called when a search starts, so that an ordering that learns as
+	 * the search goes can forget what no longer applies.
+	 */
+	public void newSearch();
+
+	/**
+	 * Called when move, searched depth plies deep at the given ply, was
+	 * good enough to cut off the rest of its siblings.
+	 */
+	public void cutoff(Board board, int move, int depth, int ply);
+}
@@ -0,0 +1,122 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.Symmetry;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * A read-only book of opening moves, looked up straight from a memory
+ * mapped file without being copied onto the heap. Positions are keyed by
+ * their canonical hash (see Board.getCanonicalHash), so a book built from
+ * games in one orientation also answers for the other seven.
+ *
+ * The file is a header of five ints: MAGIC, VERSION, the board's width
+ * and height, and the number of entries. The entries follow, sorted by
+ * key and then by weight, best first. Each one is the long key, the
+ * book move as a square index (x*dimY + y) in the canonical orientation,
+ * and the move's int weight. Everything is big-endian. See
+ * OpeningBookBuilder for how books are made.
+ */
+public class OpeningBook {
+
+	public final static int MAGIC = 0x474D4B42;
+	public final static int VERSION = 1;
+
+	final static int HEADER_SIZE = 20;
+	final static int ENTRY_SIZE = 16;
+
+	MappedByteBuffer buffer;
+	int dimX;
+	int dimY;
+	int count;
+
+	private OpeningBook(MappedByteBuffer buffer) throws IOException {
+
+		this.buffer = buffer;
+		if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+			throw new IOException("not an opening book");
+		}
+		if (buffer.getInt(4) != VERSION) {
+			throw new IOException("unsupported opening book version: " + buffer.getInt(4));
+		}
+		this.dimX = buffer.getInt(8);
+		this.dimY = buffer.getInt(12);
+		this.count = buffer.getInt(16);
+		if (buffer.capacity() < HEADER_SIZE + (long) count * ENTRY_SIZE) {
+			throw new IOException("opening book is truncated");
+		}
+	}
+
+	/**
+	 * Maps a book file into memory.
+	 */
+	public static OpeningBook open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			// The mapping stays valid after the file is closed
+			return new OpeningBook(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	/**
+	 * Returns the number of moves in the book.
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns the book move for the player to move, or null if the
+	 * position isn't in the book. Safe to call from any number of threads.
+	 */
+	public Move probe(Board board) {
+		if (board.getDimX() != dimX || board.getDimY() != dimY) {
+			return null;
+		}
+		int s = board.getCanonicalSymmetry();
+		int index = find(board.getHash(s));
+		if (index < 0) {
+			return null;
+		}
+		// Map the move back from the canonical orientation to the board's
+		int square = Symmetry.square(Symmetry.inverse(s),
+				buffer.getInt(HEADER_SIZE + index*ENTRY_SIZE + 8), dimX, dimY);
+		int x = square / dimY;
+		int y = square % dimY;
+		if (board.get(x, y) != Player.NONE) {
+			// A hash collision with some other position
+			return null;
+		}
+		return new Move(board.getCurrentPlayer(), x, y);
+	}
+
+	/**
+	 * Returns the index of the first entry with the given key, or -1 if
+	 * there is none.
+	 */
+	private int find(long key) {
+		int low = 0;
+		int high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (buffer.getLong(HEADER_SIZE + middle*ENTRY_SIZE) < key) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		if (low < count && buffer.getLong(HEADER_SIZE + low*ENTRY_SIZE) == key) {
+			return low;
+		}
+		return -1;
+	}
+}
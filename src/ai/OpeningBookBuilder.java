@@ -0,0 +1,260 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.GameReader;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.Symmetry;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import util.Pair;
+
+/**
+ * Builds an OpeningBook from finished games, either given to it, read
+ * from a GameReader, or played by an engine against itself. Every move
+ * made in the first
+ * maxPly plies of a game is credited to its position: two points if
+ * its player went on to win, one for a draw, none for a loss. The book
+ * keeps every move that scored any points, best first.
+ *
+ * Usage: java ai.OpeningBookBuilder [-size N] [-games N] [-plies N]
+ *        [-time MS] [-random N] [-seed N] [-in FILE] -out FILE
+ *
+ * With -in, the games recorded in FILE are credited, and only as many
+ * self-play games are played as -games asks for.
+ */
+public class OpeningBookBuilder {
+
+	public final static int DEFAULT_MAX_PLY = 12;
+	// Self-play games start with up to this many random moves, so that
+	// they don't all follow the engine's one favourite line
+	public final static int DEFAULT_RANDOM_MOVES = 3;
+	public final static int OPENING_RADIUS = 3;
+
+	int dimX;
+	int dimY;
+	int maxPly;
+	// Points for each canonical square, for each canonical position
+	Map<Long,Map<Integer,Integer>> positions;
+
+	public OpeningBookBuilder(int dimX, int dimY, int maxPly) {
+
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.maxPly = maxPly;
+		this.positions = new HashMap<Long,Map<Integer,Integer>>();
+	}
+
+	/**
+	 * Credits the opening moves of a finished game. The game's winner is
+	 * whoever made the last move, if it made five.
+	 */
+	public void addGame(Board game) {
+		addGame(game.getMoveHistory(), game.getWinner(), 0);
+	}
+
+	/**
+	 * Credits the moves of a game from the given ply on, replaying them
+	 * from the start.
+	 */
+	void addGame(List<Move> moves, int winner, int firstPly) {
+		if (moves.isEmpty()) {
+			return;
+		}
+		Board board = new Board(dimX, dimY, moves.get(0).getPlayer());
+		for (int ply = 0; ply < moves.size() && ply < maxPly; ply++) {
+			Move move = moves.get(ply);
+			play(board, move.getX()*dimY + move.getY(), winner, ply >= firstPly);
+		}
+	}
+
+	/**
+	 * Credits the opening moves of every game left in the reader, which
+	 * must have been played on a board of the book's size. The games are
+	 * replayed on one board, undoing each before the next, so that going
+	 * through millions of them doesn't build millions of boards.
+	 */
+	public void addGames(GameReader games) {
+		if (games.getDimX() != dimX || games.getDimY() != dimY) {
+			throw new IllegalArgumentException("games are not " + dimX + "x" + dimY);
+		}
+		Board board = null;
+		while (games.next()) {
+			if (board == null || board.getCurrentPlayer() != games.getFirstPlayer()) {
+				board = new Board(dimX, dimY, games.getFirstPlayer());
+			}
+			int plies = Math.min(games.getMoveCount(), maxPly);
+			for (int ply = 0; ply < plies; ply++) {
+				if (!play(board, games.getSquare(ply), games.getWinner(), true)) {
+					break;
+				}
+			}
+			while (board.getMoveCount() > 0) {
+				board.undoMove();
+			}
+		}
+	}
+
+	/**
+	 * Credits a move to the board's position if asked to, and then plays
+	 * it. Returns false, crediting nothing, if the move is illegal.
+	 */
+	private boolean play(Board board, int square, int winner, boolean credited) {
+		int x = square / dimY;
+		int y = square % dimY;
+		if (x >= dimX || board.get(x, y) != Player.NONE) {
+			return false;
+		}
+		int points = winner == Player.NONE ? 1 : winner == board.getCurrentPlayer() ? 2 : 0;
+		if (credited && points > 0) {
+			int s = board.getCanonicalSymmetry();
+			credit(board.getHash(s), Symmetry.square(s, square, dimX, dimY), points);
+		}
+		return board.doMove(x, y);
+	}
+
+	private void credit(long key, int square, int points) {
+		Map<Integer,Integer> moves = positions.get(key);
+		if (moves == null) {
+			moves = new HashMap<Integer,Integer>();
+			positions.put(key, moves);
+		}
+		Integer old = moves.get(square);
+		moves.put(square, old == null ? points : old + points);
+	}
+
+	/**
+	 * Plays games of the engine against itself and credits the moves the
+	 * engine chose. Each game opens with between 0 and randomMoves random
+	 * moves near the center, which are not credited.
+	 */
+	public void selfPlay(Engine engine, int games, int randomMoves, long seed) {
+		Random random = new Random(seed);
+		for (int game = 0; game < games; game++) {
+			engine.newGame();
+			Board board = new Board(dimX, dimY, Player.BLACK);
+			int opening = random.nextInt(randomMoves + 1);
+			while (board.getMoveCount() < opening) {
+				int x = dimX/2 - OPENING_RADIUS + random.nextInt(2*OPENING_RADIUS + 1);
+				int y = dimY/2 - OPENING_RADIUS + random.nextInt(2*OPENING_RADIUS + 1);
+				if (x >= 0 && x < dimX && y >= 0 && y < dimY && board.get(x, y) == Player.NONE) {
+					board.doMove(x, y);
+				}
+			}
+			while (!board.isWon() && board.getMoveCount() < dimX*dimY) {
+				Pair<Move,Integer> result = engine.think(board);
+				if (result == null || result.getFirst() == null) {
+					break;
+				}
+				board.doMove(result.getFirst().getX(), result.getFirst().getY());
+			}
+			addGame(board.getMoveHistory(), board.getWinner(), opening);
+		}
+	}
+
+	/**
+	 * Returns the number of positions in the book so far.
+	 */
+	public int size() {
+		return positions.size();
+	}
+
+	/**
+	 * Writes the book in the format OpeningBook reads.
+	 */
+	public void write(File file) throws IOException {
+		List<long[]> entries = new ArrayList<long[]>();
+		for (Map.Entry<Long,Map<Integer,Integer>> position : positions.entrySet()) {
+			for (Map.Entry<Integer,Integer> move : position.getValue().entrySet()) {
+				entries.add(new long[]{position.getKey(), move.getKey(), move.getValue()});
+			}
+		}
+		Collections.sort(entries, new Comparator<long[]>() {
+			@Override
+			public int compare(long[] a, long[] b) {
+				// By key, then by weight, best first
+				return a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]);
+			}
+		});
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+		try {
+			out.writeInt(OpeningBook.MAGIC);
+			out.writeInt(OpeningBook.VERSION);
+			out.writeInt(dimX);
+			out.writeInt(dimY);
+			out.writeInt(entries.size());
+			for (long[] entry : entries) {
+				out.writeLong(entry[0]);
+				out.writeInt((int) entry[1]);
+				out.writeInt((int) entry[2]);
+			}
+		} finally {
+			out.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		int size = 15, games = -1, plies = DEFAULT_MAX_PLY, randomMoves = DEFAULT_RANDOM_MOVES;
+		long time = 200, seed = 0;
+		String in = null, out = null;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i+1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + args[i]);
+				}
+				String value = args[i+1];
+				switch (args[i]) {
+				case "-size": size = Integer.parseInt(value); break;
+				case "-games": games = Integer.parseInt(value); break;
+				case "-plies": plies = Integer.parseInt(value); break;
+				case "-time": time = Long.parseLong(value); break;
+				case "-random": randomMoves = Integer.parseInt(value); break;
+				case "-seed": seed = Long.parseLong(value); break;
+				case "-in": in = value; break;
+				case "-out": out = value; break;
+				default:
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+				}
+			}
+			if (out == null) {
+				throw new IllegalArgumentException("-out is required");
+			}
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: java ai.OpeningBookBuilder [-size N] [-games N] [-plies N]"
+					+ " [-time MS] [-random N] [-seed N] [-in FILE] -out FILE");
+			System.exit(1);
+			return;
+		}
+		OpeningBookBuilder builder;
+		if (in != null) {
+			GameReader reader = GameReader.open(new File(in));
+			builder = new OpeningBookBuilder(reader.getDimX(), reader.getDimY(), plies);
+			builder.addGames(reader);
+		} else {
+			builder = new OpeningBookBuilder(size, size, plies);
+		}
+		if (games < 0) {
+			games = in == null ? 100 : 0;
+		}
+		if (games > 0) {
+			AlphaBeta engine = new AlphaBeta();
+			engine.setTimeLimit(time);
+			builder.selfPlay(engine, games, randomMoves, seed);
+		}
+		builder.write(new File(out));
+		System.out.println(builder.size() + " positions written to " + out);
+	}
+}
@@ -0,0 +1,228 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.BoardSnapshot;
+import gomoku.Move;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import util.Pair;
+
+/**
+ * A "Lazy SMP" parallel search. Every thread runs an ordinary AlphaBeta
+ * search on its own copy of the board, and all of them share a single
+ * TranspositionTable. The helper threads never report a move directly;
+ * they fill the table with results that let the main thread cut off
+ * earlier. Helpers also skip alternate iterations of iterative deepening
+ * so that they explore deeper trees than the main thread.
+ *
+ * As an Engine it has the same limits as AlphaBeta.
+ */
+public class ParallelSearch implements Engine {
+
+	int threads;
+	TranspositionTable table;
+	ForkJoinPool pool;
+	long nodes;
+	int completedDepth;
+	SearchStats stats;
+	int depthLimit;
+	long timeLimit;
+	OpeningBook book;
+	Reductions reductions;
+
+	public ParallelSearch() {
+
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	public ParallelSearch(int threads) {
+
+		this(threads, new TranspositionTable());
+	}
+
+	public ParallelSearch(int threads, TranspositionTable table) {
+
+		if (threads < 1) {
+			throw new IllegalArgumentException("threads must be positive: " + threads);
+		}
+		this.threads = threads;
+		this.table = table;
+		this.pool = new ForkJoinPool(threads);
+		this.stats = new SearchStats();
+		this.reductions = new Reductions();
+		this.depthLimit = 4;
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	public TranspositionTable getTable() {
+		return table;
+	}
+
+	/**
+	 * Makes the main thread look in the given book before searching; see
+	 * AlphaBeta.setBook.
+	 */
+	public void setBook(OpeningBook book) {
+		this.book = book;
+	}
+
+	/**
+	 * Sets how every thread reduces and prunes quiet moves; see
+	 * AlphaBeta.setReductions.
+	 */
+	public void setReductions(Reductions reductions) {
+		this.reductions = reductions;
+	}
+
+	/**
+	 * Makes think() search to a fixed depth, without a time budget.
+	 */
+	public void setDepth(int depth) {
+		this.depthLimit = depth;
+		this.timeLimit = 0;
+	}
+
+	/**
+	 * Makes think() deepen iteratively for the given number of
+	 * milliseconds.
+	 */
+	public void setTimeLimit(long budget) {
+		this.timeLimit = budget;
+	}
+
+	@Override
+	public Pair<Move,Integer> think(Board board) {
+		return timeLimit > 0 ? searchTimed(board, timeLimit) : search(board, depthLimit);
+	}
+
+	/**
+	 * Clears the shared transposition table.
+	 */
+	@Override
+	public void newGame() {
+		table.clear();
+	}
+
+	/**
+	 * Returns the number of nodes visited by all threads in the last search.
+	 */
+	@Override
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the statistics of the last search, added up over all of
+	 * its threads.
+	 */
+	public SearchStats getStats() {
+		return stats;
+	}
+
+	/**
+	 * Returns the depth of the deepest iteration completed by any thread
+	 * in the last search.
+	 */
+	public int getCompletedDepth() {
+		return completedDepth;
+	}
+
+	/**
+	 * Searches depth plies ahead; see AlphaBeta.search. Helpers search
+	 * one ply deeper on every other thread, short of MAX_DEPTH, and are
+	 * stopped as soon as the main thread finishes.
+	 */
+	public Pair<Move,Integer> search(Board board, final int depth) {
+		return run(board, new Task() {
+			@Override
+			public Pair<Move,Integer> search(AlphaBeta worker, Board copy) {
+				return worker.searchDepth(copy, Math.min(AlphaBeta.MAX_DEPTH, depth + (worker.helper & 1)));
+			}
+		}, true);
+	}
+
+	/**
+	 * Iterative deepening within a time budget in milliseconds; see
+	 * AlphaBeta.searchTimed. Returns the result of whichever thread
+	 * completed the deepest iteration.
+	 */
+	public Pair<Move,Integer> searchTimed(Board board, final long budget) {
+		return run(board, new Task() {
+			@Override
+			public Pair<Move,Integer> search(AlphaBeta worker, Board copy) {
+				return worker.deepen(copy, budget);
+			}
+		}, false);
+	}
+
+	/**
+	 * Releases the worker threads. The search cannot be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdownNow();
+	}
+
+	private interface Task {
+		public Pair<Move,Integer> search(AlphaBeta worker, Board copy);
+	}
+
+	private Pair<Move,Integer> run(Board board, final Task task, boolean mainOnly) {
+		AtomicBoolean stop = new AtomicBoolean();
+		final List<AlphaBeta> workers = new ArrayList<AlphaBeta>();
+		List<Future<Pair<Move,Integer>>> results = new ArrayList<Future<Pair<Move,Integer>>>();
+		// Each worker builds its own board from the snapshot, in parallel
+		final BoardSnapshot snapshot = board.snapshot();
+		for (int i = 0; i < threads; i++) {
+			final AlphaBeta worker = new AlphaBeta(table);
+			worker.stop = stop;
+			worker.helper = i;
+			worker.book = book;
+			worker.reductions = reductions;
+			workers.add(worker);
+			results.add(pool.submit(new Callable<Pair<Move,Integer>>() {
+				@Override
+				public Pair<Move,Integer> call() {
+					Board copy = snapshot.toBoard();
+					worker.evaluator.attach(copy);
+					return task.search(worker, copy);
+				}
+			}));
+		}
+		try {
+			Pair<Move,Integer> best = results.get(0).get();
+			int bestDepth = workers.get(0).completedDepth;
+			stop.set(true);
+			nodes = 0;
+			stats.reset();
+			for (int i = 0; i < threads; i++) {
+				Pair<Move,Integer> result = results.get(i).get();
+				AlphaBeta worker = workers.get(i);
+				nodes += worker.nodes;
+				stats.add(worker.stats);
+				if (!mainOnly && result != null && worker.completedDepth > bestDepth) {
+					best = result;
+					bestDepth = worker.completedDepth;
+				}
+			}
+			completedDepth = bestDepth;
+			return best;
+		} catch (InterruptedException e) {
+			stop.set(true);
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			stop.set(true);
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
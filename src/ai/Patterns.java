@@ -0,0 +1,163 @@
+package ai;
+
+import gomoku.BitBoard;
+import gomoku.Player;
+
+import java.util.Arrays;
+
+/**
+ * A lookup table of line shapes. The nine squares of a line centered on
+ * a square are described by two 9-bit masks: the player's own pieces,
+ * and the squares that are blocked (opponent pieces, or off the board).
+ * Together they index a table, built once when the class is loaded,
+ * holding the shape the player has through the center square on that
+ * line, assuming the player has (or puts) a piece there.
+ *
+ * Shapes are ranked by how many moves the player is from five:
+ *   FIVE        five or more in a row through the center
+ *   OPEN_FOUR   two different squares would each make five
+ *   FOUR        exactly one square would make five
+ *   OPEN_THREE  some square makes an OPEN_FOUR
+ *   THREE       some square makes a FOUR
+ *   OPEN_TWO    some square makes an OPEN_THREE
+ *   TWO         some square makes a THREE
+ *   ONE         five in a row is still possible through the center
+ *   NONE        the line is dead
+ */
+public final class Patterns {
+
+	private Patterns() {}
+
+	public final static int NONE = 0;
+	public final static int ONE = 1;
+	public final static int TWO = 2;
+	public final static int OPEN_TWO = 3;
+	public final static int THREE = 4;
+	public final static int OPEN_THREE = 5;
+	public final static int FOUR = 6;
+	public final static int OPEN_FOUR = 7;
+	public final static int FIVE = 8;
+
+	public final static int SHAPE_COUNT = 9;
+
+	public final static int[] SCORES = {0, 1, 4, 10, 20, 60, 100, 1000, 10000};
+
+	// Bit for the center square, and all nine squares, of a window
+	public final static long CENTER = 1L << 4;
+	public final static long WINDOW = 0x1FF;
+
+	private final static byte UNKNOWN = -1;
+
+	private final static byte[] SHAPES = new byte[1 << 18];
+
+	static {
+		Arrays.fill(SHAPES, UNKNOWN);
+		for (int own = 0; own < (1 << 9); own++) {
+			if ((own & CENTER) == 0) {
+				continue;
+			}
+			for (int blocked = 0; blocked < (1 << 9); blocked++) {
+				if ((own & blocked) == 0) {
+					classify(own, blocked);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns the shape for a window of own pieces and blocked squares.
+	 * The center bit of own is assumed to be set.
+	 */
+	public static int shape(long own, long blocked) {
+		return SHAPES[index(own | CENTER, blocked & ~CENTER)];
+	}
+
+	/**
+	 * Returns the shape the player would have through (x,y) along
+	 * orientation o by playing there (or already has, if the square is
+	 * the player's).
+	 */
+	public static int shape(BitBoard bits, int player, int o, int x, int y) {
+		long own = bits.window(player, o, x, y, 4);
+		long blocked = bits.window(Player.other(player), o, x, y, 4)
+				| (~bits.window(BitBoard.ON_BOARD, o, x, y, 4) & WINDOW);
+		return shape(own, blocked);
+	}
+
+	/**
+	 * Returns the best shape the player would have through (x,y) along
+	 * any of the four orientations.
+	 */
+	public static int bestShape(BitBoard bits, int player, int x, int y) {
+		int best = NONE;
+		for (int o = 0; o < 4; o++) {
+			best = Math.max(best, shape(bits, player, o, x, y));
+		}
+		return best;
+	}
+
+	private static int index(long own, long blocked) {
+		return (int) (own | (blocked << 9));
+	}
+
+	private static int classify(int own, int blocked) {
+		int index = index(own, blocked);
+		if (SHAPES[index] != UNKNOWN) {
+			return SHAPES[index];
+		}
+		int shape;
+		if (isFive(own)) {
+			shape = FIVE;
+		} else {
+			int empty = (int) WINDOW & ~own & ~blocked;
+			int fives = 0, best = NONE;
+			for (int bit = 0; bit < 9; bit++) {
+				if ((empty & (1 << bit)) != 0) {
+					int next = classify(own | (1 << bit), blocked);
+					if (next == FIVE) {
+						fives++;
+					}
+					best = Math.max(best, next);
+				}
+			}
+			if (fives >= 2) {
+				shape = OPEN_FOUR;
+			} else if (fives == 1) {
+				shape = FOUR;
+			} else if (best == OPEN_FOUR) {
+				shape = OPEN_THREE;
+			} else if (best == FOUR) {
+				shape = THREE;
+			} else if (best == OPEN_THREE) {
+				shape = OPEN_TWO;
+			} else if (best == THREE) {
+				shape = TWO;
+			} else if (isAlive(blocked)) {
+				shape = ONE;
+			} else {
+				shape = NONE;
+			}
+		}
+		SHAPES[index] = (byte) shape;
+		return shape;
+	}
+
+	private static boolean isFive(int own) {
+		for (int offset = 0; offset < 5; offset++) {
+			int mask = 0x1F << offset;
+			if ((own & mask) == mask) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static boolean isAlive(int blocked) {
+		for (int offset = 0; offset < 5; offset++) {
+			if ((blocked & (0x1F << offset)) == 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
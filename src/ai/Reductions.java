@@ -0,0 +1,106 @@
+package ai;
+
+/**
+ * How much less than full depth AlphaBeta gives the quiet moves of a
+ * node, those that neither make nor stop an open three or better.
+ * Ordering puts the threats first, and the moves after them rarely turn
+ * out best, so depth spent on them is better spent on the forcing lines.
+ *
+ * Late move reductions search the index'th move of a node at depth
+ * depth with
+ *
+ *   base + ln(depth) * ln(index) / divisor
+ *
+ * plies less, rounded down, once the first few moves have been searched
+ * in full. A reduced move that beats alpha is searched again at full
+ * depth. Futility pruning, which is off unless margins are given, skips
+ * the quiet moves of a node within margins.length plies of the horizon
+ * altogether when its static score plus margins[depth-1] is still no
+ * better than alpha.
+ */
+public class Reductions {
+
+	public final static double DEFAULT_BASE = 0.5;
+	public final static double DEFAULT_DIVISOR = 2;
+	// Nodes shallower than this are never reduced
+	public final static int MIN_DEPTH = 3;
+	// Moves searched at full depth in every node before any is reduced
+	public final static int FULL_MOVES = 3;
+	// Moves beyond this index are reduced as much as the last
+	final static int MAX_MOVES = 64;
+
+	/**
+	 * Gives every move full depth, as a plain alpha-beta search does.
+	 */
+	public final static Reductions NONE = new Reductions(0, 0, new int[0]);
+
+	final double base;
+	final double divisor;
+	// table[depth][index]
+	final int[][] table;
+	final int[] margins;
+
+	public Reductions() {
+
+		this(DEFAULT_BASE, DEFAULT_DIVISOR, new int[0]);
+	}
+
+	/**
+	 * Builds the table for the given base and divisor, of which a divisor
+	 * of 0 turns reductions off, and prunes with the given margins.
+	 */
+	public Reductions(double base, double divisor, int[] margins) {
+
+		this.base = base;
+		this.divisor = divisor;
+		this.margins = margins.clone();
+		this.table = new int[AlphaBeta.MAX_DEPTH+1][MAX_MOVES];
+		if (divisor <= 0) {
+			return;
+		}
+		for (int depth = MIN_DEPTH; depth <= AlphaBeta.MAX_DEPTH; depth++) {
+			for (int index = FULL_MOVES; index < MAX_MOVES; index++) {
+				int reduction = (int) (base + Math.log(depth) * Math.log(index) / divisor);
+				// Always leave at least one ply to search
+				table[depth][index] = Math.max(0, Math.min(reduction, depth - 2));
+			}
+		}
+	}
+
+	/**
+	 * Returns how many plies to take off the index'th move of a node at
+	 * the given depth, if it is quiet.
+	 */
+	int reduction(int depth, int index) {
+		return table[depth][Math.min(index, MAX_MOVES-1)];
+	}
+
+	/**
+	 * Returns the futility margin for a node at the given depth, or -1 if
+	 * its quiet moves are not to be pruned.
+	 */
+	int margin(int depth) {
+		return depth <= margins.length ? margins[depth-1] : -1;
+	}
+
+	/**
+	 * Returns whether any move is ever reduced or pruned.
+	 */
+	public boolean isEnabled() {
+		return divisor > 0 || margins.length > 0;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append(divisor > 0 ? "lmr=" + base + "/" + divisor : "lmr=off");
+		s.append(",futility=");
+		if (margins.length == 0) {
+			s.append("off");
+		}
+		for (int i = 0; i < margins.length; i++) {
+			s.append(i > 0 ? "/" : "").append(margins[i]);
+		}
+		return s.toString();
+	}
+}
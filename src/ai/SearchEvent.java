@@ -0,0 +1,38 @@
+package ai;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * A JFR event spanning one call to AlphaBeta.search or searchTimed, so
+ * that flight recordings show how long the engine thought about each
+ * move and what it got for it.
+ */
+@Name("gomoku.Search")
+@Label("Search")
+@Category("Gomoku")
+@Description("One search for the best move")
+public class SearchEvent extends Event {
+
+	@Label("Moves Played")
+	int moveCount;
+
+	@Label("Completed Depth")
+	int completedDepth;
+
+	@Label("Nodes")
+	long nodes;
+
+	@Label("Threat Nodes")
+	long threatNodes;
+
+	@Label("Leaf Evaluations")
+	long leafEvaluations;
+
+	@Label("Helper")
+	@Description("Zero for the main thread, otherwise the ParallelSearch helper number")
+	int helper;
+}
@@ -0,0 +1,222 @@
+package ai;
+
+/**
+ * Counters filled in by a search as it runs, to be read once it is done.
+ * They describe the shape of the tree (nodes at each ply, how many moves
+ * each node had to choose from), how well it was pruned (how often a node
+ * was cut off, and how often by its first move) and how much the
+ * transposition table helped. A search resets them when it starts.
+ */
+public class SearchStats {
+
+	long[] nodesPerPly;
+	long leafEvaluations;
+	// Interior nodes whose moves were generated, and how many moves that
+	// came to in total
+	long expanded;
+	long replies;
+	long cutoffs;
+	long firstMoveCutoffs;
+	// Null window searches that failed high and had to be done again,
+	// and iterations whose score fell outside the aspiration window
+	long researches;
+	long aspirationFailures;
+	// Quiet moves searched to less than full depth, those of them that
+	// had to be searched again at full depth, and those pruned outright
+	long reduced;
+	long reducedResearches;
+	long pruned;
+	long tableProbes;
+	long tableHits;
+	// Nanoseconds taken by each completed iteration, indexed by depth
+	long[] iterationTimes;
+	long threatNodes;
+	long threatTime;
+	long time;
+
+	public SearchStats() {
+
+		nodesPerPly = new long[AlphaBeta.MAX_DEPTH+1];
+		iterationTimes = new long[AlphaBeta.MAX_DEPTH+1];
+	}
+
+	public void reset() {
+		for (int i = 0; i < nodesPerPly.length; i++) {
+			nodesPerPly[i] = 0;
+			iterationTimes[i] = 0;
+		}
+		leafEvaluations = 0;
+		expanded = 0;
+		replies = 0;
+		cutoffs = 0;
+		firstMoveCutoffs = 0;
+		researches = 0;
+		aspirationFailures = 0;
+		reduced = 0;
+		reducedResearches = 0;
+		pruned = 0;
+		tableProbes = 0;
+		tableHits = 0;
+		threatNodes = 0;
+		threatTime = 0;
+		time = 0;
+	}
+
+	/**
+	 * Adds another search's counters to these, as when combining the
+	 * threads of a ParallelSearch. Iteration times are the longest of
+	 * the two, since the threads ran side by side.
+	 */
+	public void add(SearchStats other) {
+		for (int i = 0; i < nodesPerPly.length; i++) {
+			nodesPerPly[i] += other.nodesPerPly[i];
+			iterationTimes[i] = Math.max(iterationTimes[i], other.iterationTimes[i]);
+		}
+		leafEvaluations += other.leafEvaluations;
+		expanded += other.expanded;
+		replies += other.replies;
+		cutoffs += other.cutoffs;
+		firstMoveCutoffs += other.firstMoveCutoffs;
+		researches += other.researches;
+		aspirationFailures += other.aspirationFailures;
+		reduced += other.reduced;
+		reducedResearches += other.reducedResearches;
+		pruned += other.pruned;
+		tableProbes += other.tableProbes;
+		tableHits += other.tableHits;
+		threatNodes += other.threatNodes;
+		threatTime = Math.max(threatTime, other.threatTime);
+		time = Math.max(time, other.time);
+	}
+
+	/**
+	 * Returns the number of nodes visited at the given distance from the
+	 * root.
+	 */
+	public long getNodes(int ply) {
+		return nodesPerPly[ply];
+	}
+
+	/**
+	 * Returns the total number of nodes visited by the main search, not
+	 * counting the threat search.
+	 */
+	public long getNodes() {
+		long total = 0;
+		for (long nodes : nodesPerPly) {
+			total += nodes;
+		}
+		return total;
+	}
+
+	public long getLeafEvaluations() {
+		return leafEvaluations;
+	}
+
+	/**
+	 * Returns the average number of moves generated at each interior
+	 * node, which is the branching factor before any pruning.
+	 */
+	public double getAverageReplies() {
+		return ratio(replies, expanded);
+	}
+
+	/**
+	 * Returns the share of interior nodes where a move failed high and
+	 * the rest of the moves were skipped.
+	 */
+	public double getCutoffRatio() {
+		return ratio(cutoffs, expanded);
+	}
+
+	/**
+	 * Returns the share of cutoffs caused by the first move searched. The
+	 * closer this is to 1, the better the moves are ordered.
+	 */
+	public double getFirstMoveCutoffRatio() {
+		return ratio(firstMoveCutoffs, cutoffs);
+	}
+
+	public long getResearches() {
+		return researches;
+	}
+
+	public long getAspirationFailures() {
+		return aspirationFailures;
+	}
+
+	public long getReduced() {
+		return reduced;
+	}
+
+	public long getReducedResearches() {
+		return reducedResearches;
+	}
+
+	public long getPruned() {
+		return pruned;
+	}
+
+	/**
+	 * Returns the share of transposition table probes that found an entry
+	 * for the position.
+	 */
+	public double getTableHitRatio() {
+		return ratio(tableHits, tableProbes);
+	}
+
+	/**
+	 * Returns how long the iteration to the given depth took, in
+	 * milliseconds, or 0 if it was not completed.
+	 */
+	public double getIterationTime(int depth) {
+		return iterationTimes[depth] / 1e6;
+	}
+
+	public long getThreatNodes() {
+		return threatNodes;
+	}
+
+	/**
+	 * Returns how long the threat search took, in milliseconds.
+	 */
+	public double getThreatTime() {
+		return threatTime / 1e6;
+	}
+
+	/**
+	 * Returns how long the whole search took, in milliseconds.
+	 */
+	public double getTime() {
+		return time / 1e6;
+	}
+
+	public double getNodesPerSecond() {
+		return ratio(getNodes() + threatNodes, time) * 1e9;
+	}
+
+	private static double ratio(long part, long whole) {
+		return whole == 0 ? 0 : (double) part / whole;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder s = new StringBuilder();
+		s.append(String.format("%d nodes in %.1f ms (%.0f nodes/s), %d leaf evaluations%n",
+				getNodes(), getTime(), getNodesPerSecond(), leafEvaluations));
+		s.append(String.format("threats: %d nodes in %.1f ms%n", threatNodes, getThreatTime()));
+		s.append(String.format("replies: %.1f per node, cutoffs: %.0f%% (%.0f%% on the first move), table hits: %.0f%%%n",
+				getAverageReplies(), 100 * getCutoffRatio(), 100 * getFirstMoveCutoffRatio(), 100 * getTableHitRatio()));
+		s.append(String.format("re-searches: %d, aspiration failures: %d%n", researches, aspirationFailures));
+		s.append(String.format("reduced: %d (%d searched again), pruned: %d%n", reduced, reducedResearches, pruned));
+		s.append("nodes per ply:");
+		for (int ply = 0; ply < nodesPerPly.length && nodesPerPly[ply] > 0; ply++) {
+			s.append(' ').append(nodesPerPly[ply]);
+		}
+		s.append(String.format("%niteration times (ms):"));
+		for (int depth = 1; depth < iterationTimes.length && iterationTimes[depth] > 0; depth++) {
+			s.append(String.format(" %d:%.1f", depth, getIterationTime(depth)));
+		}
+		return s.toString();
+	}
+}
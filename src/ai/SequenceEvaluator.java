@@ -0,0 +1,23 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Player;
+
+/**
+ * Evaluates the board with GomokuAI.evaluate, rescanning every sequence
+ * of both players each time.
+ */
+public class SequenceEvaluator implements Evaluator {
+
+	@Override
+	public void attach(Board board) {}
+
+	@Override
+	public void detach(Board board) {}
+
+	@Override
+	public int evaluate(Board board) {
+		int[] result = GomokuAI.evaluate(board);
+		return result[Player.BLACK]-result[Player.WHITE];
+	}
+}
@@ -0,0 +1,311 @@
+package ai;
+
+import gomoku.Board;
+import gomoku.Move;
+import gomoku.Player;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Searches for forced wins made of nothing but threats. In a victory by
+ * continuous fours (VCF) every attacking move makes a four, so the
+ * defender only ever has one reply: block it. In a victory by continuous
+ * threats (VCT) the attacker may also make open threes, and the defender
+ * may answer them anywhere on the threatened lines or with a four of
+ * their own. Because so few moves are threats, these searches can look
+ * far deeper than the main search at very little cost.
+ *
+ * Threats are read from an IncrementalEvaluator attached to the board,
+ * which keeps a list of the squares where either player would make an
+ * open three or better, so finding them costs no more on a large board
+ * than on a small one. Sequences are tried shortest first, and each
+ * search is cut off after a fixed number of nodes, or when its deadline
+ * passes or it is told to stop, in which case no win is reported.
+ */
+public class ThreatSearch {
+
+	public final static int DEFAULT_NODE_BUDGET = 20000;
+	public final static int MAX_PLY = 40;
+
+	private final static int[] DX = {1, 1, 0, -1, -1, -1, 0, 1};
+	private final static int[] DY = {0, -1, -1, -1, 0, 1, 1, 1};
+
+	IncrementalEvaluator shapes;
+	// Whether shapes belongs to the caller, who keeps it attached
+	boolean shared;
+	int budget;
+	AtomicBoolean stop;
+	long deadline;
+	long nodes;
+	boolean exhausted;
+	// Deepest ply the current iteration may reach, and whether any line
+	// was cut short by it
+	int maxPly;
+	boolean cut;
+	int attacker;
+	int defender;
+	// Weakest shape the attacker may threaten with: FOUR or OPEN_THREE
+	int minThreat;
+	// Each ply's candidate squares and their shapes, grown by reserve()
+	int[][] lists;
+	int[][] found;
+	int winningMove;
+
+	public ThreatSearch() {
+
+		this(DEFAULT_NODE_BUDGET);
+	}
+
+	public ThreatSearch(int budget) {
+
+		this(budget, new IncrementalEvaluator());
+		this.shared = false;
+	}
+
+	/**
+	 * Constructs a search that reads threats from the given evaluator,
+	 * which the caller must keep attached to every board searched,
+	 * instead of attaching an evaluator of its own for each search.
+	 */
+	public ThreatSearch(int budget, IncrementalEvaluator shapes) {
+
+		this.budget = budget;
+		this.shapes = shapes;
+		this.shared = true;
+		this.stop = new AtomicBoolean();
+		this.deadline = Long.MAX_VALUE;
+	}
+
+	/**
+	 * Makes the searches that follow give up, as if out of nodes, once
+	 * stop is set or System.nanoTime() reaches the deadline.
+	 */
+	public void setLimits(AtomicBoolean stop, long deadline) {
+		this.stop = stop;
+		this.deadline = deadline;
+	}
+
+	/**
+	 * Returns the number of nodes visited by the last search.
+	 */
+	public long getNodes() {
+		return nodes;
+	}
+
+	/**
+	 * Returns the first move of a victory by continuous fours for the
+	 * player to move, or null if none was found.
+	 */
+	public Move findVCF(Board board) {
+		return solve(board, Patterns.FOUR);
+	}
+
+	/**
+	 * Returns the first move of a victory by continuous fours and open
+	 * threes for the player to move, or null if none was found.
+	 */
+	public Move findVCT(Board board) {
+		return solve(board, Patterns.OPEN_THREE);
+	}
+
+	Move solve(Board board, int minThreat) {
+		if (lists == null) {
+			lists = new int[MAX_PLY+1][0];
+			found = new int[MAX_PLY+1][0];
+		}
+		this.nodes = 0;
+		this.exhausted = false;
+		this.attacker = board.getCurrentPlayer();
+		this.defender = Player.other(attacker);
+		this.minThreat = minThreat;
+		if (!shared) {
+			shapes.attach(board);
+		}
+		try {
+			// Attacker moves are on even plies, so each iteration allows
+			// one more of them
+			for (maxPly = 2; maxPly <= MAX_PLY; maxPly += 2) {
+				cut = false;
+				if (attack(board, 0)) {
+					return new Move(attacker, winningMove / board.getDimY(), winningMove % board.getDimY());
+				}
+				if (exhausted || !cut) {
+					break;
+				}
+			}
+			return null;
+		} finally {
+			if (!shared) {
+				shapes.detach(board);
+			}
+		}
+	}
+
+	/**
+	 * Returns whether the attacker, who is to move, can force a win.
+	 */
+	boolean attack(Board board, int ply) {
+		if (++nodes > budget || (nodes & 63) == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+			exhausted = true;
+		}
+		if (exhausted) {
+			return false;
+		}
+		reserve(ply);
+		int[] list = lists[ply];
+		int[] found = this.found[ply];
+		int dimY = board.getDimY();
+		if (collect(board, attacker, Patterns.FIVE, list, found, 0) > 0) {
+			winningMove = list[0];
+			return true;
+		}
+		if (ply >= maxPly) {
+			cut = true;
+			return false;
+		}
+		int count = collect(board, defender, Patterns.FIVE, list, found, 0);
+		if (count > 1) {
+			return false;
+		} else if (count == 1) {
+			// The defender has a four, which must be blocked at once. That
+			// only keeps the initiative if the block is itself a threat.
+			int square = list[0];
+			if (shapes.bestShape(attacker, square) < minThreat) {
+				return false;
+			}
+		} else {
+			count = collect(board, attacker, minThreat, list, found, 0);
+			EvaluationOrdering.sort(list, found, count);
+		}
+		for (int i = 0; i < count; i++) {
+			int square = list[i];
+			board.doMove(square / dimY, square % dimY);
+			boolean win = defend(board, ply+1);
+			board.undoMove();
+			if (win) {
+				winningMove = square;
+				return true;
+			}
+			if (exhausted) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns whether the attacker wins against every sensible reply of
+	 * the defender, who is to move.
+	 */
+	boolean defend(Board board, int ply) {
+		if (++nodes > budget || (nodes & 63) == 0 && (stop.get() || System.nanoTime() >= deadline)) {
+			exhausted = true;
+		}
+		if (exhausted) {
+			return false;
+		}
+		reserve(ply);
+		int[] list = lists[ply];
+		int[] found = this.found[ply];
+		int dimY = board.getDimY();
+		if (collect(board, defender, Patterns.FIVE, list, found, 0) > 0) {
+			return false;
+		}
+		int count = collect(board, attacker, Patterns.FIVE, list, found, 0);
+		if (count > 1) {
+			// Two ways to make five can't both be blocked
+			return true;
+		} else if (count == 0) {
+			if (minThreat >= Patterns.FOUR) {
+				return false;
+			}
+			// An open three. It can only be stopped on one of the lines
+			// through the move that made it, or by a four of the
+			// defender's, which the attacker then has to answer.
+			Move last = board.getLastMove();
+			count = collectLines(board, last.getX(), last.getY(), list);
+			count = collect(board, defender, Patterns.FOUR, list, found, count);
+		}
+		for (int i = 0; i < count; i++) {
+			int square = list[i];
+			board.doMove(square / dimY, square % dimY);
+			boolean win = attack(board, ply+1);
+			board.undoMove();
+			if (!win) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Makes sure the lists of the ply have room for whatever collect()
+	 * and collectLines() put in them: the threat squares of both players,
+	 * and the up to 32 squares of collectLines().
+	 */
+	private void reserve(int ply) {
+		int needed = 32 + shapes.countThreats(attacker) + shapes.countThreats(defender);
+		if (lists[ply].length < needed) {
+			lists[ply] = new int[2*needed];
+			found[ply] = new int[2*needed];
+		}
+	}
+
+	/**
+	 * Appends to list, starting at count, every empty square not already
+	 * in it where the player would make at least the given shape, which
+	 * must be an open three or better, and records each square's shape at
+	 * the same index of found. Returns the new length of the list.
+	 */
+	int collect(Board board, int player, int minShape, int[] list, int[] found, int count) {
+		if (!shapes.hasShape(player, minShape)) {
+			return count;
+		}
+		int start = count;
+		for (int i = 0; i < shapes.countThreats(player); i++) {
+			int square = shapes.threat(player, i);
+			int shape = shapes.bestShape(player, square);
+			if (shape >= minShape && !contains(list, start, square)) {
+				found[count] = shape;
+				list[count++] = square;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Appends every empty square within four steps of (x,y) along the
+	 * four lines through it. Returns the new length of the list.
+	 */
+	int collectLines(Board board, int x, int y, int[] list) {
+		int dimX = board.getDimX();
+		int dimY = board.getDimY();
+		int count = 0;
+		for (int d = 0; d < 8; d++) {
+			for (int step = 1; step <= 4; step++) {
+				int squareX = x + step*DX[d];
+				int squareY = y + step*DY[d];
+				if (squareX < 0 || squareX >= dimX || squareY < 0 || squareY >= dimY) {
+					break;
+				}
+				if (board.get(squareX, squareY) == Player.NONE) {
+					list[count++] = squareX*dimY + squareY;
+				}
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Returns whether the square is among the first count of the list,
+	 * which are never more than the 32 that collectLines() finds.
+	 */
+	private static boolean contains(int[] list, int count, int square) {
+		for (int i = 0; i < count; i++) {
+			if (list[i] == square) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
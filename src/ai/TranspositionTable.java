@@ -0,0 +1,122 @@
+package ai;
+
+import java.util.Arrays;
+
+/**
+ * A fixed-size hash table of search results keyed by
+ * Board.getCanonicalHash(), so that a position reached in any of its
+ * symmetric orientations shares one entry. Best moves are stored in the
+ * canonical orientation (see Symmetry).
+ * Each entry is packed into a single long, and stored next to its key
+ * XORed with that long. A torn or interleaved write from another thread
+ * then simply fails the key check on probe, so the table can be shared
+ * between threads without any locking.
+ */
+public class TranspositionTable {
+
+	public final static int DEFAULT_BITS = 20;
+
+	/*
+	 * Bound types. An EXACT score is the true value of the position,
+	 * a LOWER score failed high and an UPPER score failed low.
+	 */
+	public final static int EXACT = 0;
+	public final static int LOWER = 1;
+	public final static int UPPER = 2;
+
+	/*
+	 * Layout of an entry:
+	 *   bits  0-31  score
+	 *   bits 32-39  depth
+	 *   bits 40-41  bound type
+	 *   bits 42-51  best move x
+	 *   bits 52-61  best move y
+	 *   bit  62     set if there is a best move
+	 *   bit  63     set for every stored entry
+	 */
+	private final static long HAS_MOVE = 1L << 62;
+	private final static long VALID = 1L << 63;
+
+	long[] keys;
+	long[] entries;
+	int mask;
+
+	public TranspositionTable() {
+
+		this(DEFAULT_BITS);
+	}
+
+	/**
+	 * Constructs a table with 2^bits entries.
+	 */
+	public TranspositionTable(int bits) {
+
+		keys = new long[1 << bits];
+		entries = new long[1 << bits];
+		mask = (1 << bits) - 1;
+	}
+
+	/**
+	 * Returns the entry stored for the given hash, or 0 if there is none.
+	 */
+	public long probe(long hash) {
+		int index = (int) hash & mask;
+		long entry = entries[index];
+		if (entry != 0 && (keys[index] ^ entry) == hash) {
+			return entry;
+		}
+		return 0;
+	}
+
+	/**
+	 * Records a search result. A shallower result never replaces a deeper
+	 * one for the same position. Coordinates of -1 mean there is no best
+	 * move.
+	 */
+	public void store(long hash, int depth, int bound, int score, int x, int y) {
+		int index = (int) hash & mask;
+		long old = entries[index];
+		if (old != 0 && (keys[index] ^ old) == hash && depth(old) > depth) {
+			return;
+		}
+		long entry = VALID | (score & 0xFFFFFFFFL) | ((long) (depth & 0xFF) << 32)
+				| ((long) bound << 40);
+		if (x >= 0 && y >= 0) {
+			entry |= HAS_MOVE | ((long) (x & 0x3FF) << 42) | ((long) (y & 0x3FF) << 52);
+		}
+		keys[index] = hash ^ entry;
+		entries[index] = entry;
+	}
+
+	/**
+	 * Empties the table.
+	 */
+	public void clear() {
+		Arrays.fill(keys, 0);
+		Arrays.fill(entries, 0);
+	}
+
+	public static int score(long entry) {
+		return (int) entry;
+	}
+
+	public static int depth(long entry) {
+		return (int) (entry >>> 32) & 0xFF;
+	}
+
+	public static int bound(long entry) {
+		return (int) (entry >>> 40) & 0x3;
+	}
+
+	public static boolean hasMove(long entry) {
+		return (entry & HAS_MOVE) != 0;
+	}
+
+	public static int moveX(long entry) {
+		return (int) (entry >>> 42) & 0x3FF;
+	}
+
+	public static int moveY(long entry) {
+		return (int) (entry >>> 52) & 0x3FF;
+	}
+}
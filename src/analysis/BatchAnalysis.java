@@ -0,0 +1,446 @@
+package analysis;
+
+import gomoku.Board;
+import gomoku.GameReader;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.Symmetry;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import tournament.EngineSpec;
+import util.Pair;
+import ai.Engine;
+import ai.TranspositionTable;
+
+/**
+ * Finds the best move and score of every position in a stream of them,
+ * on every core. One thread reads positions and hands them to a pool of
+ * workers, each with its own engine and its own Board; a worker only
+ * takes back and replays the moves in which a position differs from the
+ * last one it analyzed, so the successive positions of a game cost a
+ * move or two each. One more thread writes the results, in the order the
+ * positions were read, as soon as each one and everything before it is
+ * done.
+ *
+ * At most window positions are ever between being read and being
+ * written. Once that many are, the reader waits, so memory stays the
+ * same however long the input is and however far a slow position holds
+ * up the output. Results are also kept in a table keyed by canonical
+ * hash, so a position that comes up again, in any orientation, is
+ * answered without a search.
+ *
+ * Positions are read either from a text file, one per line as the
+ * moves played from an empty board with BLACK first ("7,7 8,8 7,8"),
+ * or from a GameWriter file, in which case every position of every game
+ * is analyzed, before each of its moves. Each result is a line of tab
+ * separated fields: the position's id (its line number, or game.ply),
+ * the best move as x,y, the score (positive is good for BLACK) and the
+ * nodes searched, 0 if the result was already known. A position that
+ * can't be analyzed gets its id and "ERR" and the reason instead.
+ *
+ * Usage: java analysis.BatchAnalysis [-engine SPEC] [-threads N]
+ *        [-window N] [-size N] (-in FILE | -games FILE) [-out FILE]
+ */
+public class BatchAnalysis {
+
+	public final static String DEFAULT_ENGINE = "alphabeta:time=100";
+	public final static int DEFAULT_SIZE = 15;
+	public final static int DEFAULT_WINDOW = 4096;
+	public final static int RESULT_BITS = 20;
+
+	/**
+	 * A position to analyze: the moves leading to it, by square index.
+	 * seq counts positions in the order they were read.
+	 */
+	static class Position {
+
+		long seq;
+		String id;
+		int firstPlayer;
+		int[] squares;
+		String result;
+
+		Position(long seq, String id, int firstPlayer, int[] squares) {
+
+			this.seq = seq;
+			this.id = id;
+			this.firstPlayer = firstPlayer;
+			this.squares = squares;
+		}
+	}
+
+	// Tells workers that there are no more positions
+	final static Position END = new Position(-1, null, 0, null);
+
+	EngineSpec spec;
+	int threads;
+	int dimX;
+	int dimY;
+	BlockingQueue<Position> input;
+	BlockingQueue<Position> output;
+	Semaphore window;
+	// Best moves, in the canonical orientation, and scores found so far
+	TranspositionTable results;
+	long count;
+	// Why the output couldn't be written, if it couldn't
+	volatile IOException failure;
+
+	public BatchAnalysis(EngineSpec spec, int threads, int window, int dimX, int dimY) {
+
+		this.spec = spec;
+		this.threads = threads;
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.input = new ArrayBlockingQueue<Position>(window);
+		this.output = new LinkedBlockingQueue<Position>();
+		this.window = new Semaphore(window);
+		this.results = new TranspositionTable(RESULT_BITS);
+	}
+
+	/**
+	 * Analyzes every position of every line of a text file.
+	 */
+	public void analyze(BufferedReader in, Writer out) throws IOException, InterruptedException {
+		Thread[] workers = start(out);
+		try {
+			read(in);
+		} finally {
+			finish(workers);
+		}
+		checkOutput();
+	}
+
+	private void read(BufferedReader in) throws IOException, InterruptedException {
+		String line;
+		int number = 0;
+		int[] squares = new int[dimX * dimY];
+		while ((line = in.readLine()) != null) {
+			number++;
+			line = line.trim();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			int moves = 0;
+			String error = null;
+			for (String move : line.split("\\s+")) {
+				int comma = move.indexOf(',');
+				int x, y;
+				try {
+					x = Integer.parseInt(move.substring(0, Math.max(comma, 0)));
+					y = Integer.parseInt(move.substring(comma + 1));
+				} catch (NumberFormatException e) {
+					error = "not a move: " + move;
+					break;
+				}
+				if (x < 0 || x >= dimX || y < 0 || y >= dimY || moves == squares.length) {
+					error = "off the board: " + move;
+					break;
+				}
+				squares[moves++] = x*dimY + y;
+			}
+			submit(String.valueOf(number), Player.BLACK, squares, moves,
+					error == null ? null : "ERR " + error);
+		}
+	}
+
+	/**
+	 * Analyzes the position before every move of every game in a game
+	 * file.
+	 */
+	public void analyze(GameReader games, Writer out) throws IOException, InterruptedException {
+		if (games.getDimX() != dimX || games.getDimY() != dimY) {
+			throw new IllegalArgumentException("games are not " + dimX + "x" + dimY);
+		}
+		Thread[] workers = start(out);
+		try {
+			read(games);
+		} finally {
+			finish(workers);
+		}
+		checkOutput();
+	}
+
+	private void read(GameReader games) throws IOException, InterruptedException {
+		int[] squares = new int[dimX * dimY];
+		for (int game = 1; games.next(); game++) {
+			int moves = Math.min(games.getMoveCount(), squares.length);
+			for (int i = 0; i < moves; i++) {
+				squares[i] = games.getSquare(i);
+			}
+			for (int ply = 0; ply < moves; ply++) {
+				submit(game + "." + ply, games.getFirstPlayer(), squares, ply, null);
+			}
+		}
+	}
+
+	/**
+	 * Queues the position made of the first count squares, waiting while
+	 * the window is full. A position that already has a result, such as
+	 * an error, is passed straight through.
+	 */
+	private void submit(String id, int firstPlayer, int[] squares, int count, String result)
+			throws InterruptedException {
+		int[] moves = new int[count];
+		System.arraycopy(squares, 0, moves, 0, count);
+		Position position = new Position(this.count++, id, firstPlayer, moves);
+		position.result = result;
+		window.acquire();
+		input.put(position);
+	}
+
+	private Thread[] start(final Writer out) {
+		Thread[] workers = new Thread[threads + 1];
+		for (int i = 0; i < threads; i++) {
+			workers[i] = new Thread(new Worker(), "analysis-" + (i+1));
+			workers[i].start();
+		}
+		workers[threads] = new Thread(new Runnable() {
+			@Override
+			public void run() {
+				try {
+					write(out);
+				} catch (InterruptedException e) {}
+			}
+		}, "analysis-writer");
+		workers[threads].start();
+		return workers;
+	}
+
+	/**
+	 * Tells the workers and then the writer that there are no more
+	 * positions, and waits for them to be done. This is called even if
+	 * reading the input failed, or the threads would wait forever.
+	 */
+	private void finish(Thread[] workers) throws InterruptedException {
+		for (int i = 0; i < threads; i++) {
+			input.put(END);
+		}
+		for (int i = 0; i < threads; i++) {
+			workers[i].join();
+		}
+		output.put(END);
+		workers[threads].join();
+	}
+
+	private void checkOutput() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Writes results in order, holding back any that are done before
+	 * the ones ahead of them, until every worker has finished. If the
+	 * output fails, the rest of the results are dropped, so that the
+	 * reader isn't left waiting for room in the window.
+	 */
+	void write(Writer out) throws InterruptedException {
+		Map<Long,Position> early = new HashMap<Long,Position>();
+		long next = 0;
+		while (true) {
+			Position position = output.take();
+			if (position == END) {
+				break;
+			}
+			early.put(position.seq, position);
+			try {
+				while ((position = early.remove(next)) != null) {
+					next++;
+					window.release();
+					if (failure == null) {
+						out.write(position.id);
+						out.write('\t');
+						out.write(position.result);
+						out.write('\n');
+					}
+				}
+				if (output.isEmpty() && failure == null) {
+					// Let whoever reads the output see everything done so far
+					out.flush();
+				}
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+		try {
+			out.flush();
+		} catch (IOException e) {
+			if (failure == null) {
+				failure = e;
+			}
+		}
+	}
+
+	/**
+	 * Takes positions off the input queue and analyzes them until told
+	 * that there are no more.
+	 */
+	class Worker implements Runnable {
+
+		Engine engine;
+		Board board;
+
+		@Override
+		public void run() {
+			engine = spec.create();
+			try {
+				Position position;
+				while ((position = input.take()) != END) {
+					if (position.result == null) {
+						try {
+							position.result = analyze(position);
+						} catch (Throwable e) {
+							// Even an Error must post a result, or the writer
+							// waits for this position forever. The search may
+							// have been left half done, so start afresh.
+							position.result = "ERR " + e;
+							board = null;
+							EngineSpec.dispose(engine);
+							engine = spec.create();
+						}
+					}
+					output.put(position);
+				}
+			} catch (InterruptedException e) {
+			} finally {
+				EngineSpec.dispose(engine);
+			}
+		}
+
+		String analyze(Position position) {
+			if (!setUp(position)) {
+				return "ERR illegal move";
+			}
+			if (board.isWon() || board.getMoveCount() == dimX * dimY) {
+				return "ERR game over";
+			}
+			int s = board.getCanonicalSymmetry();
+			long key = board.getHash(s);
+			long entry = results.probe(key);
+			if (entry != 0 && TranspositionTable.hasMove(entry)) {
+				int square = Symmetry.square(Symmetry.inverse(s),
+						TranspositionTable.moveX(entry)*dimY + TranspositionTable.moveY(entry), dimX, dimY);
+				// Unless it is a hash collision with some other position
+				if (board.get(square / dimY, square % dimY) == Player.NONE) {
+					return format(square / dimY, square % dimY, TranspositionTable.score(entry), 0);
+				}
+			}
+			Pair<Move,Integer> result = engine.think(board);
+			if (result == null || result.getFirst() == null) {
+				return "ERR no move";
+			}
+			Move move = result.getFirst();
+			int square = Symmetry.square(s, move.getX()*dimY + move.getY(), dimX, dimY);
+			results.store(key, 0, TranspositionTable.EXACT, result.getSecond(),
+					square / dimY, square % dimY);
+			return format(move.getX(), move.getY(), result.getSecond(), engine.getNodes());
+		}
+
+		/**
+		 * Brings the worker's board to the position, keeping the moves it
+		 * shares with whatever the board held before. Returns false if
+		 * one of the moves is illegal.
+		 */
+		boolean setUp(Position position) {
+			if (board == null || (board.getMoveCount() == 0 ?
+					board.getCurrentPlayer() : board.getMove(0).getPlayer()) != position.firstPlayer) {
+				board = new Board(dimX, dimY, position.firstPlayer);
+			}
+			int[] squares = position.squares;
+			int common = 0;
+			while (common < squares.length && common < board.getMoveCount()) {
+				Move move = board.getMove(common);
+				if (move.getX()*dimY + move.getY() != squares[common]) {
+					break;
+				}
+				common++;
+			}
+			while (board.getMoveCount() > common) {
+				board.undoMove();
+			}
+			for (int i = common; i < squares.length; i++) {
+				if (!board.doMove(squares[i] / dimY, squares[i] % dimY)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	static String format(int x, int y, int score, long nodes) {
+		return x + "," + y + "\t" + score + "\t" + nodes;
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String engine = DEFAULT_ENGINE, in = null, games = null, out = "-";
+		int threads = Runtime.getRuntime().availableProcessors(), window = DEFAULT_WINDOW, size = DEFAULT_SIZE;
+		EngineSpec spec;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i+1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + args[i]);
+				}
+				String value = args[i+1];
+				switch (args[i]) {
+				case "-engine": engine = value; break;
+				case "-threads": threads = Integer.parseInt(value); break;
+				case "-window": window = Integer.parseInt(value); break;
+				case "-size": size = Integer.parseInt(value); break;
+				case "-in": in = value; break;
+				case "-games": games = value; break;
+				case "-out": out = value; break;
+				default:
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+				}
+			}
+			if ((in == null) == (games == null)) {
+				throw new IllegalArgumentException("exactly one of -in and -games is required");
+			}
+			spec = EngineSpec.parse(engine);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: java analysis.BatchAnalysis [-engine SPEC] [-threads N]"
+					+ " [-window N] [-size N] (-in FILE | -games FILE) [-out FILE]");
+			System.exit(1);
+			return;
+		}
+		Writer writer = new BufferedWriter(new OutputStreamWriter(out.equals("-") ?
+				System.out : new FileOutputStream(out), StandardCharsets.UTF_8));
+		long start = System.nanoTime();
+		BatchAnalysis analysis;
+		if (games != null) {
+			GameReader reader = GameReader.open(new File(games));
+			analysis = new BatchAnalysis(spec, threads, window, reader.getDimX(), reader.getDimY());
+			analysis.analyze(reader, writer);
+		} else {
+			analysis = new BatchAnalysis(spec, threads, window, size, size);
+			BufferedReader reader = new BufferedReader(new InputStreamReader(in.equals("-") ?
+					System.in : new FileInputStream(in), StandardCharsets.UTF_8));
+			try {
+				analysis.analyze(reader, writer);
+			} finally {
+				reader.close();
+			}
+		}
+		writer.close();
+		double seconds = (System.nanoTime() - start) / 1e9;
+		System.err.printf("%d positions in %.1f s, %.0f/s%n",
+				analysis.count, seconds, analysis.count / seconds);
+	}
+}
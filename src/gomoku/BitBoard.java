@@ -0,0 +1,230 @@
+package gomoku;
+
+/**
+ * A bitboard view of a board, kept up to date by Board. Every line of
+ * the board (row, column, diagonal and anti-diagonal) is stored as a
+ * string of bits, one per square, for each player. A whole stretch of a
+ * line can then be read with a couple of shifts and masks instead of
+ * walking from square to square.
+ *
+ * Lines are stored in four orientations. Reading orientation o from
+ * (x,y) moves by (STEP_X[o], STEP_Y[o]) per bit, so the orientations
+ * cover the same lines as Direction.PARTIAL_DIRECTIONS.
+ */
+public class BitBoard {
+
+	public final static int HORIZONTAL = 0;
+	public final static int DIAGONAL = 1;
+	public final static int VERTICAL = 2;
+	public final static int ANTI_DIAGONAL = 3;
+
+	public final static int[] STEP_X = {1, 1, 0, 1};
+	public final static int[] STEP_Y = {0, -1, 1, 1};
+
+	/*
+	 * Planes: one per player, plus one in which every square that is on
+	 * the board is set, so that windows reaching over the edge can be
+	 * told apart from empty squares.
+	 */
+	public final static int ON_BOARD = 2;
+
+	int dimX;
+	int dimY;
+	// Number of longs used for each line in each orientation
+	int[] words;
+	// planes[orientation][plane] holds every line of that orientation
+	long[][][] planes;
+
+	public BitBoard(int dimX, int dimY) {
+
+		this(dimX, dimY, true);
+	}
+
+	/**
+	 * Lays out the lines of a dimX-by-dimY board, and only allocates the
+	 * planes if dense is set. Otherwise the subclass stores them, by
+	 * overriding word and toggle.
+	 */
+	BitBoard(int dimX, int dimY, boolean dense) {
+
+		this.dimX = dimX;
+		this.dimY = dimY;
+		words = new int[4];
+		for (int o = 0; o < 4; o++) {
+			words[o] = (length(o) + 63) >>> 6;
+		}
+		if (dense) {
+			planes = new long[4][3][];
+			for (int o = 0; o < 4; o++) {
+				for (int plane = 0; plane < 3; plane++) {
+					planes[o][plane] = new long[lines(o) * words[o]];
+				}
+			}
+			for (int x = 0; x < dimX; x++) {
+				for (int y = 0; y < dimY; y++) {
+					flip(ON_BOARD, x, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Copies another bitboard. The ON_BOARD plane never changes, so the
+	 * copy shares it.
+	 */
+	BitBoard(BitBoard other) {
+
+		this.dimX = other.dimX;
+		this.dimY = other.dimY;
+		this.words = other.words;
+		if (other.planes != null) {
+			planes = new long[4][][];
+			for (int o = 0; o < 4; o++) {
+				planes[o] = new long[][] {
+					other.planes[o][Player.BLACK].clone(),
+					other.planes[o][Player.WHITE].clone(),
+					other.planes[o][ON_BOARD]
+				};
+			}
+		}
+	}
+
+	/**
+	 * Returns a bitboard with the same pieces as this one, which can be
+	 * changed without affecting it.
+	 */
+	public BitBoard copy() {
+		return new BitBoard(this);
+	}
+
+	/**
+	 * Returns the player with a piece at (x,y), or Player.NONE.
+	 */
+	public int get(int x, int y) {
+		if (test(Player.BLACK, x, y)) {
+			return Player.BLACK;
+		} else if (test(Player.WHITE, x, y)) {
+			return Player.WHITE;
+		}
+		return Player.NONE;
+	}
+
+	/**
+	 * Returns whether the given plane has the bit for (x,y) set.
+	 */
+	public boolean test(int plane, int x, int y) {
+		int index = line(HORIZONTAL, x, y) * words[HORIZONTAL] + (x >>> 6);
+		return (word(HORIZONTAL, plane, index) & (1L << x)) != 0;
+	}
+
+	void set(int player, int x, int y) {
+		flip(player, x, y);
+	}
+
+	void clear(int player, int x, int y) {
+		flip(player, x, y);
+	}
+
+	private void flip(int plane, int x, int y) {
+		for (int o = 0; o < 4; o++) {
+			int position = position(o, x, y);
+			int index = line(o, x, y) * words[o] + (position >>> 6);
+			toggle(o, plane, index, 1L << position);
+		}
+	}
+
+	/**
+	 * Returns the index'th long of a plane in orientation o. Line l of
+	 * the orientation starts at index l*words[o].
+	 */
+	long word(int o, int plane, int index) {
+		return planes[o][plane][index];
+	}
+
+	/**
+	 * Flips the given bits of the index'th long of a plane in
+	 * orientation o.
+	 */
+	void toggle(int o, int plane, int index, long bits) {
+		planes[o][plane][index] ^= bits;
+	}
+
+	/**
+	 * Returns the 2*radius+1 bits of a plane centered on (x,y) along
+	 * orientation o. Bit i stands for the square i-radius steps away from
+	 * (x,y); squares off the board read as 0. The radius may be at most 31.
+	 */
+	public long window(int plane, int o, int x, int y, int radius) {
+		int from = position(o, x, y) - radius;
+		int count = 2*radius + 1;
+		int shift = 0;
+		if (from < 0) {
+			shift = -from;
+			count -= shift;
+			from = 0;
+		}
+		int base = line(o, x, y) * words[o];
+		int word = from >>> 6;
+		int bit = from & 63;
+		if (word >= words[o]) {
+			return 0;
+		}
+		long value = word(o, plane, base + word) >>> bit;
+		if (bit + count > 64 && word + 1 < words[o]) {
+			value |= word(o, plane, base + word + 1) << (64 - bit);
+		}
+		return (value & ((1L << count) - 1)) << shift;
+	}
+
+	/**
+	 * Returns whether the player has five or more pieces in a row on any
+	 * line through (x,y).
+	 */
+	public boolean hasFive(int player, int x, int y) {
+		for (int o = 0; o < 4; o++) {
+			long w = window(player, o, x, y, 4);
+			if ((w & (w >>> 1) & (w >>> 2) & (w >>> 3) & (w >>> 4)) != 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the number of lines stored in orientation o.
+	 */
+	private int lines(int o) {
+		switch (o) {
+		case HORIZONTAL:
+			return dimY;
+		case VERTICAL:
+			return dimX;
+		default:
+			return dimX + dimY - 1;
+		}
+	}
+
+	/**
+	 * Returns the number of bits used for each line in orientation o.
+	 */
+	private int length(int o) {
+		return o == VERTICAL ? dimY : dimX;
+	}
+
+	private int line(int o, int x, int y) {
+		switch (o) {
+		case HORIZONTAL:
+			return y;
+		case DIAGONAL:
+			return x + y;
+		case VERTICAL:
+			return x;
+		default:
+			return x - y + dimY - 1;
+		}
+	}
+
+	private int position(int o, int x, int y) {
+		return o == VERTICAL ? y : x;
+	}
+}
@@ -1,20 +1,33 @@
 package gomoku;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import ai.Direction;
 
 public class Board {
 
+	// Made as they are first asked for, by getSquare
 	Square[][] squares;
-	LinkedList<Piece> whitePieces;
-	LinkedList<Piece> blackPieces;
+	ArrayList<Piece> whitePieces;
+	ArrayList<Piece> blackPieces;
+	int firstPlayer;
 	int currentPlayer;
-	LinkedList<Move> moveHistory;
-	LinkedList<Piece>[] pieces;
+	ArrayList<Move> moveHistory;
+	ArrayList<Piece>[] pieces;
+	// One Move per player per square, so that doMove(x,y) need not
+	// allocate a new one every time. Moves never change, so copies of
+	// the board share these.
+	Move[][] moves;
 	int dimX;
 	int dimY;
+	long hash;
+	// The hash of the position's image under each Symmetry, kept up to
+	// date as moves are made. Entry 0, the identity, is the same as hash.
+	long[] symmetryHashes;
+	BitBoard bits;
+	List<BoardListener> listeners;
 	
 	/**
 	 * Constructs an empty dimX-by-dimY board with firstPlayer
@@ -22,34 +35,108 @@ public class Board {
 	 */
 	public Board(int dimX, int dimY, int firstPlayer) {
 		
-		this.dimX = dimX;
-		this.dimY = dimY;
-		currentPlayer = firstPlayer;
-		squares = new Square[dimX][dimY];
+		this(dimX, dimY, firstPlayer, new BitBoard(dimX, dimY), null);
 		for (int i = 0; i < dimX; i++) {
 			for (int j = 0; j < dimY; j++) {
-				squares[i][j] = new Square(i, j);
+				moves[Player.BLACK][i*dimY + j] = new Move(Player.BLACK, i, j);
+				moves[Player.WHITE][i*dimY + j] = new Move(Player.WHITE, i, j);
 			}
 		}
-		moveHistory = new LinkedList<Move>();
-		whitePieces = new LinkedList<Piece>();
-		blackPieces = new LinkedList<Piece>();
-		pieces = (LinkedList<Piece>[])(new LinkedList[] {blackPieces,whitePieces});
+	}
+	
+	/**
+	 * Constructs an empty board on the given bitboard, sharing the given
+	 * moves, or making room for them if there are none yet.
+	 */
+	Board(int dimX, int dimY, int firstPlayer, BitBoard bits, Move[][] moves) {
 		
-		// Connect all squares to one another
-		int shiftX,shiftY;
-		for (int i = 0; i < dimX; i++) {
-			for (int j = 0; j < dimY; j++) {
-				for (int direction : Direction.DIRECTIONS) {
-					Square sq = squares[i][j];
-					shiftX = Direction.shiftX(sq.x, direction);
-					shiftY = Direction.shiftY(sq.y, direction);
-					if (shiftX >= 0 && shiftX < dimX && shiftY >= 0 && shiftY < dimY) {
-						sq.neighbors[direction] = squares[shiftX][shiftY];
-					}
-				}
-			}
+		this(dimX, dimY, firstPlayer, bits);
+		this.squares = new Square[dimX][dimY];
+		this.moves = moves != null ? moves : new Move[2][dimX*dimY];
+	}
+	
+	/**
+	 * Sets up everything but the squares, which a subclass keeps in its
+	 * own way.
+	 */
+	Board(int dimX, int dimY, int firstPlayer, BitBoard bits) {
+		
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.bits = bits;
+		this.firstPlayer = firstPlayer;
+		currentPlayer = firstPlayer;
+		hash = (firstPlayer == Player.WHITE) ? Zobrist.SIDE : 0;
+		symmetryHashes = new long[Symmetry.COUNT];
+		for (int s = 0; s < Symmetry.COUNT; s++) {
+			symmetryHashes[s] = hash;
 		}
+		moveHistory = new ArrayList<Move>();
+		whitePieces = new ArrayList<Piece>();
+		blackPieces = new ArrayList<Piece>();
+		pieces = (ArrayList<Piece>[])(new ArrayList[] {blackPieces,whitePieces});
+		listeners = new ArrayList<BoardListener>();
+	}
+	
+	/**
+	 * Returns a new, empty board of the same size and kind as this one,
+	 * with firstPlayer as the first to make a move.
+	 */
+	public Board newBoard(int firstPlayer) {
+		return blank(firstPlayer, new BitBoard(dimX, dimY));
+	}
+	
+	/**
+	 * Returns an empty board of the same size and kind as this one, on
+	 * the given bitboard.
+	 */
+	Board blank(int firstPlayer, BitBoard bits) {
+		return new Board(dimX, dimY, firstPlayer, bits, moves);
+	}
+	
+	/**
+	 * Returns a board in the same position as this one, with the same
+	 * history, that can be played on independently. Nothing is replayed:
+	 * the bitboard and hashes are copied as they are, and only the
+	 * squares that have pieces on them are set up. Listeners are not
+	 * copied.
+	 */
+	public Board copy() {
+		Board copy = blank(firstPlayer, bits.copy());
+		copy.setPosition(moveHistory, hash, symmetryHashes);
+		return copy;
+	}
+	
+	/**
+	 * Returns an immutable copy of this board's position and history,
+	 * which can be shared between threads.
+	 */
+	public BoardSnapshot snapshot() {
+		return new BoardSnapshot(this);
+	}
+	
+	/**
+	 * Fills in an empty board whose bitboard already holds the position
+	 * that history leads to, with the given hashes.
+	 */
+	void setPosition(List<Move> history, long hash, long[] symmetryHashes) {
+		moveHistory.addAll(history);
+		for (int i = 0; i < history.size(); i++) {
+			Move move = history.get(i);
+			pieces[move.player].add(getSquare(move.x, move.y).addPiece(move.player));
+		}
+		if ((history.size() & 1) != 0) {
+			currentPlayer = Player.other(firstPlayer);
+		}
+		this.hash = hash;
+		System.arraycopy(symmetryHashes, 0, this.symmetryHashes, 0, Symmetry.COUNT);
+	}
+	
+	/**
+	 * Returns the player who moved first, or will on an empty board.
+	 */
+	public int getFirstPlayer() {
+		return firstPlayer;
 	}
 	
 	/**
@@ -59,6 +146,50 @@ public class Board {
 		return currentPlayer;
 	}
 	
+	/**
+	 * Returns the Zobrist hash of the current position, which covers
+	 * every piece on the board as well as the player to move.
+	 */
+	public long getHash() {
+		return hash;
+	}
+	
+	/**
+	 * Returns the hash getHash() would return for the image of this
+	 * position under symmetry s, without building it.
+	 */
+	public long getHash(int s) {
+		return symmetryHashes[s];
+	}
+	
+	/**
+	 * Returns the symmetry whose image of this position has the smallest
+	 * hash. Its image is the canonical form of the position, which is
+	 * the same for all of the position's rotations and reflections.
+	 */
+	public int getCanonicalSymmetry() {
+		return canonicalSymmetry(symmetryHashes, dimX, dimY);
+	}
+	
+	static int canonicalSymmetry(long[] symmetryHashes, int dimX, int dimY) {
+		int best = Symmetry.IDENTITY;
+		for (int s = 1; s < Symmetry.COUNT; s++) {
+			if (Symmetry.applies(s, dimX, dimY)
+					&& Long.compareUnsigned(symmetryHashes[s], symmetryHashes[best]) < 0) {
+				best = s;
+			}
+		}
+		return best;
+	}
+	
+	/**
+	 * Returns the hash of the canonical form of this position, which
+	 * identifies it along with all of its rotations and reflections.
+	 */
+	public long getCanonicalHash() {
+		return symmetryHashes[getCanonicalSymmetry()];
+	}
+	
 	/**
 	 * Given a player (black or white) returns the corresponding
 	 * list of pieces belonging to that player. 
@@ -67,11 +198,109 @@ public class Board {
 		return pieces[side];
 	}
 	
+	/**
+	 * Given coordinates, returns the player whose piece occupies that
+	 * square, or Player.NONE if it is empty.
+	 */
+	public int get(int x, int y) {
+		return bits.get(x, y);
+	}
+	
+	/**
+	 * Returns the bitboard view of the pieces on this board, which
+	 * is kept in step with every move.
+	 */
+	public BitBoard getBitBoard() {
+		return bits;
+	}
+	
+	/**
+	 * Registers a listener to be told about every subsequent move.
+	 */
+	public void addListener(BoardListener listener) {
+		listeners.add(listener);
+	}
+	
+	public void removeListener(BoardListener listener) {
+		listeners.remove(listener);
+	}
+	
+	/**
+	 * Returns the moves played so far, oldest first. The list
+	 * cannot be modified.
+	 */
+	public List<Move> getMoveHistory() {
+		return Collections.unmodifiableList(moveHistory);
+	}
+	
+	/**
+	 * Returns the number of moves played so far.
+	 */
+	public int getMoveCount() {
+		return moveHistory.size();
+	}
+	
+	/**
+	 * Returns the index'th move played, counting from 0.
+	 */
+	public Move getMove(int index) {
+		return moveHistory.get(index);
+	}
+	
+	/**
+	 * Returns the most recent move, or null if no move has been played.
+	 */
+	public Move getLastMove() {
+		return moveHistory.isEmpty() ? null : moveHistory.get(moveHistory.size()-1);
+	}
+	
+	/**
+	 * Returns the player who has five in a row, or Player.NONE if
+	 * nobody has. Only the last move can have made five, so only the
+	 * four lines through it are checked.
+	 */
+	public int getWinner() {
+		Move last = getLastMove();
+		if (last != null && bits.hasFive(last.getPlayer(), last.getX(), last.getY())) {
+			return last.getPlayer();
+		}
+		return Player.NONE;
+	}
+	
+	/**
+	 * Returns whether the game has been won; see getWinner.
+	 */
+	public boolean isWon() {
+		return getWinner() != Player.NONE;
+	}
+	
 	/**
 	 * Given coordinates, returns the square at that coordinate.
 	 */
 	public Square getSquare(int x, int y) {
-		return squares[x][y];
+		Square square = squares[x][y];
+		if (square == null) {
+			square = new Square(x, y);
+			square.board = this;
+			squares[x][y] = square;
+		}
+		return square;
+	}
+	
+	/**
+	 * Returns the neighbor of a square in the given direction, or null
+	 * if it is off the board, and links the two to each other.
+	 */
+	Square link(Square square, int direction) {
+		int x = Direction.shiftX(square.x, direction);
+		int y = Direction.shiftY(square.y, direction);
+		if (x < 0 || x >= dimX || y < 0 || y >= dimY) {
+			return null;
+		}
+		Square neighbor = getSquare(x, y);
+		square.neighbors[direction] = neighbor;
+		neighbor.neighbors[Direction.opposite(direction)] = square;
+		return neighbor;
 	}
 	
 	/**
@@ -79,11 +308,17 @@ public class Board {
 	 */
 	public void undoMove() {
 		if (!moveHistory.isEmpty()) {
-			Move lastMove = moveHistory.removeLast();
+			Move lastMove = moveHistory.remove(moveHistory.size()-1);
 			// System.err.println("Undoing " + lastMove.player + "'s previous move.");
-			squares[lastMove.x][lastMove.y].removePiece();
-			pieces[lastMove.player].removeLast();
+			getSquare(lastMove.x, lastMove.y).removePiece();
+			pieces[lastMove.player].remove(pieces[lastMove.player].size()-1);
+			bits.clear(lastMove.player, lastMove.x, lastMove.y);
+			hash ^= Zobrist.key(lastMove.player, lastMove.x, lastMove.y) ^ Zobrist.SIDE;
+			updateSymmetryHashes(lastMove);
 			currentPlayer = Player.other(currentPlayer);
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).moveUndone(this, lastMove);
+			}
 		}
 	}
 	
@@ -91,6 +326,9 @@ public class Board {
 	 * Convenience method for doMove (see below)
 	 */
 	public boolean doMove(int x, int y) {
+		if (x >= 0 && x < dimX && y >= 0 && y < dimY) {
+			return doMove(moves[currentPlayer][x*dimY + y]);
+		}
 		return doMove(new Move(currentPlayer,x,y));
 	}
 	
@@ -110,15 +348,36 @@ public class Board {
 	public boolean doMove(Move move) {
 		boolean valid = isValid(move);
 		if (valid) {
-			pieces[move.player].add(squares[move.x][move.y].addPiece(move.player));
+			pieces[move.player].add(getSquare(move.x, move.y).addPiece(move.player));
 			moveHistory.add(move);
+			bits.set(move.player, move.x, move.y);
+			hash ^= Zobrist.key(move.player, move.x, move.y) ^ Zobrist.SIDE;
+			updateSymmetryHashes(move);
 			// System.out.print("Player " + currentPlayer + " moved at (" + move.x + "," + move.y + ")");
 			currentPlayer = Player.other(currentPlayer);
 			// System.out.println("...currently player " + currentPlayer + "'s turn.");
+			for (int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).movePlayed(this, move);
+			}
 		}
 		return valid;
 	}
 	
+	/**
+	 * Toggles a move in the hash of every image of the position. The
+	 * image of a piece is a piece of the same player on the mapped square.
+	 */
+	private void updateSymmetryHashes(Move move) {
+		symmetryHashes[Symmetry.IDENTITY] = hash;
+		for (int s = 1; s < Symmetry.COUNT; s++) {
+			if (Symmetry.applies(s, dimX, dimY)) {
+				symmetryHashes[s] ^= Zobrist.SIDE ^ Zobrist.key(move.player,
+						Symmetry.x(s, move.x, move.y, dimX, dimY),
+						Symmetry.y(s, move.x, move.y, dimX, dimY));
+			}
+		}
+	}
+	
 	/**
 	 * Given a Move, returns true if the Move is valid, and
 	 * false otherwise.
@@ -130,7 +389,7 @@ public class Board {
 		return (move.player == currentPlayer &&
 				move.x >= 0 && move.x < dimX &&
 				move.y >= 0 && move.y < dimY && 
-				squares[move.x][move.y].piece == null);
+				bits.get(move.x, move.y) == Player.NONE);
 	}	
 	
 }
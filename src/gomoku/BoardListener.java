@@ -0,0 +1,12 @@
+package gomoku;
+
+/**
+ * Notified by a Board whenever a move is made or taken back, after the
+ * board itself has been updated.
+ */
+public interface BoardListener {
+
+	public void movePlayed(Board board, Move move);
+	
+	public void moveUndone(Board board, Move move);
+}
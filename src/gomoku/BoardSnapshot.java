@@ -0,0 +1,137 @@
+package gomoku;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable copy of a board's position and move history, made by
+ * Board.snapshot(). Nothing in it ever changes, so one snapshot can be
+ * handed to any number of threads, each of which turns it into a board
+ * of its own with toBoard() rather than replaying the game.
+ *
+ * It answers the same questions about the position as a Board, but
+ * has no Squares or Pieces; those are only made for the boards built
+ * from it.
+ */
+public final class BoardSnapshot {
+
+	private final int dimX;
+	private final int dimY;
+	private final int firstPlayer;
+	private final List<Move> moveHistory;
+	private final long[] symmetryHashes;
+	// Never changed once copied from the board
+	private final BitBoard bits;
+	private final boolean sparse;
+	// The dense board's Moves, which boards built from this share
+	private final Move[][] moves;
+
+	BoardSnapshot(Board board) {
+
+		this.dimX = board.dimX;
+		this.dimY = board.dimY;
+		this.firstPlayer = board.firstPlayer;
+		this.moveHistory = Collections.unmodifiableList(new ArrayList<Move>(board.moveHistory));
+		this.symmetryHashes = board.symmetryHashes.clone();
+		this.bits = board.bits.copy();
+		this.sparse = board instanceof SparseBoard;
+		this.moves = board.moves;
+	}
+
+	/**
+	 * Returns a new board of the same kind as the one this was taken
+	 * from, in this position and with this history.
+	 */
+	public Board toBoard() {
+		Board board;
+		if (sparse) {
+			board = new SparseBoard(dimX, dimY, firstPlayer, bits.copy());
+		} else {
+			board = new Board(dimX, dimY, firstPlayer, bits.copy(), moves);
+		}
+		board.setPosition(moveHistory, symmetryHashes[Symmetry.IDENTITY], symmetryHashes);
+		return board;
+	}
+
+	public int getDimX() {
+		return dimX;
+	}
+
+	public int getDimY() {
+		return dimY;
+	}
+
+	public int getFirstPlayer() {
+		return firstPlayer;
+	}
+
+	public int getCurrentPlayer() {
+		return (moveHistory.size() & 1) == 0 ? firstPlayer : Player.other(firstPlayer);
+	}
+
+	/**
+	 * See Board.getHash().
+	 */
+	public long getHash() {
+		return symmetryHashes[Symmetry.IDENTITY];
+	}
+
+	/**
+	 * See Board.getHash(int).
+	 */
+	public long getHash(int s) {
+		return symmetryHashes[s];
+	}
+
+	public int getCanonicalSymmetry() {
+		return Board.canonicalSymmetry(symmetryHashes, dimX, dimY);
+	}
+
+	public long getCanonicalHash() {
+		return symmetryHashes[getCanonicalSymmetry()];
+	}
+
+	/**
+	 * Given coordinates, returns the player whose piece occupies that
+	 * square, or Player.NONE if it is empty.
+	 */
+	public int get(int x, int y) {
+		return bits.get(x, y);
+	}
+
+	/**
+	 * Returns the moves played, oldest first. The list cannot be
+	 * modified.
+	 */
+	public List<Move> getMoveHistory() {
+		return moveHistory;
+	}
+
+	public int getMoveCount() {
+		return moveHistory.size();
+	}
+
+	public Move getMove(int index) {
+		return moveHistory.get(index);
+	}
+
+	public Move getLastMove() {
+		return moveHistory.isEmpty() ? null : moveHistory.get(moveHistory.size()-1);
+	}
+
+	/**
+	 * See Board.getWinner().
+	 */
+	public int getWinner() {
+		Move last = getLastMove();
+		if (last != null && bits.hasFive(last.getPlayer(), last.getX(), last.getY())) {
+			return last.getPlayer();
+		}
+		return Player.NONE;
+	}
+
+	public boolean isWon() {
+		return getWinner() != Player.NONE;
+	}
+}
@@ -0,0 +1,181 @@
+package gomoku;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads a file of games written by GameWriter, straight from a memory
+ * mapped copy of it. The reader is a cursor: next moves it on to the
+ * following game, whose moves can then be read one at a time without
+ * creating a Move or a Board for any of them, so that millions of games
+ * can be gone through without building up garbage.
+ *
+ * A game cut off part way through, as by a writer that was killed, ends
+ * the file. A reader must only be used by one thread at a time; open
+ * the file again for each thread that needs it. Files must be smaller
+ * than 2GB.
+ */
+public class GameReader {
+
+	MappedByteBuffer buffer;
+	int dimX;
+	int dimY;
+	int rules;
+	int moveSize;
+	// Where the next game starts
+	int next;
+	// Where the moves of the current game start, and how many there are
+	int moves;
+	int count;
+	int firstPlayer;
+	int winner;
+
+	private GameReader(MappedByteBuffer buffer) throws IOException {
+
+		this.buffer = buffer;
+		if (buffer.capacity() < GameWriter.HEADER_SIZE || buffer.getInt(0) != GameWriter.MAGIC) {
+			throw new IOException("not a game file");
+		}
+		if (buffer.get(4) != GameWriter.VERSION) {
+			throw new IOException("unsupported game file version: " + buffer.get(4));
+		}
+		this.rules = buffer.get(5);
+		this.dimX = buffer.getShort(6) & 0xFFFF;
+		this.dimY = buffer.getShort(8) & 0xFFFF;
+		this.moveSize = GameWriter.moveSize(dimX, dimY);
+		rewind();
+	}
+
+	/**
+	 * Maps a game file into memory.
+	 */
+	public static GameReader open(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			if (raf.length() > Integer.MAX_VALUE) {
+				throw new IOException("game file is too large to map: " + file);
+			}
+			// The mapping stays valid after the file is closed
+			return new GameReader(raf.getChannel().map(FileChannel.MapMode.READ_ONLY, 0, raf.length()));
+		} finally {
+			raf.close();
+		}
+	}
+
+	public int getDimX() {
+		return dimX;
+	}
+
+	public int getDimY() {
+		return dimY;
+	}
+
+	/**
+	 * Returns the rules the games were played by, such as
+	 * GameWriter.FREESTYLE.
+	 */
+	public int getRules() {
+		return rules;
+	}
+
+	/**
+	 * Goes back to before the first game.
+	 */
+	public void rewind() {
+		next = GameWriter.HEADER_SIZE;
+		count = 0;
+	}
+
+	/**
+	 * Moves on to the next game. Returns false, and leaves the cursor
+	 * where it is, if there are no more.
+	 */
+	public boolean next() {
+		int position = next;
+		int limit = buffer.limit();
+		if (position >= limit) {
+			return false;
+		}
+		int flags = buffer.get(position++);
+		int moveCount = 0;
+		for (int shift = 0; ; shift += 7) {
+			if (position >= limit || shift > 28) {
+				return false;
+			}
+			int b = buffer.get(position++);
+			moveCount |= (b & 0x7F) << shift;
+			if (b >= 0) {
+				break;
+			}
+		}
+		if (moveCount < 0 || (long) position + (long) moveCount * moveSize > limit) {
+			return false;
+		}
+		firstPlayer = flags & 1;
+		winner = (flags >>> 1 & 3) - 1;
+		moves = position;
+		count = moveCount;
+		next = position + moveCount * moveSize;
+		return true;
+	}
+
+	/**
+	 * Returns the player who moved first in the current game.
+	 */
+	public int getFirstPlayer() {
+		return firstPlayer;
+	}
+
+	/**
+	 * Returns the winner of the current game, or Player.NONE if nobody
+	 * won it.
+	 */
+	public int getWinner() {
+		return winner;
+	}
+
+	/**
+	 * Returns the number of moves in the current game.
+	 */
+	public int getMoveCount() {
+		return count;
+	}
+
+	/**
+	 * Returns the square index (x*dimY + y) of the index'th move of the
+	 * current game, counting from 0.
+	 */
+	public int getSquare(int index) {
+		int position = moves + index*moveSize;
+		int square = 0;
+		for (int i = 0; i < moveSize; i++) {
+			square = square << 8 | buffer.get(position + i) & 0xFF;
+		}
+		return square;
+	}
+
+	/**
+	 * Returns the player who made the index'th move of the current game.
+	 */
+	public int getPlayer(int index) {
+		return (index & 1) == 0 ? firstPlayer : Player.other(firstPlayer);
+	}
+
+	/**
+	 * Plays the current game onto an empty board of the right size,
+	 * whose first player must match the game's. Returns false if one of
+	 * the moves was illegal, leaving the moves before it played.
+	 */
+	public boolean replay(Board board) {
+		for (int i = 0; i < count; i++) {
+			int square = getSquare(i);
+			if (!board.doMove(square / dimY, square % dimY)) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
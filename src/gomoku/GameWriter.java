@@ -0,0 +1,140 @@
+package gomoku;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+/**
+ * Writes games one after another to a compact binary file, which
+ * GameReader reads back. Games are written as they finish and nothing is
+ * kept once they are, so a writer can archive any number of them.
+ *
+ * The file starts with a header: the int MAGIC, a byte VERSION, a byte
+ * for the rules, and the board's width and height as shorts. Each game
+ * then takes a byte holding the first player in bit 0 and the winner
+ * plus one (0 for nobody) in bits 1-2, its number of moves as an
+ * unsigned LEB128 varint, and the moves themselves. Players alternate,
+ * so a move is just its square index (x*dimY + y), in as few bytes as
+ * fit every square: one on boards of up to 256 squares, such as 15x15,
+ * and two up to 256x256. Everything is big-endian.
+ */
+public class GameWriter implements Closeable {
+
+	public final static int MAGIC = 0x474D4B47;
+	public final static int VERSION = 1;
+	/**
+	 * Rules: five or more in a row wins, and nothing is forbidden.
+	 */
+	public final static int FREESTYLE = 0;
+
+	final static int HEADER_SIZE = 10;
+
+	DataOutputStream out;
+	int dimX;
+	int dimY;
+	int moveSize;
+	long games;
+	// Each game is encoded here, and then written all at once
+	byte[] record;
+
+	public GameWriter(File file, int dimX, int dimY) throws IOException {
+
+		this(new FileOutputStream(file), dimX, dimY);
+	}
+
+	/**
+	 * Starts a file of games played on a dimX-by-dimY board, and writes
+	 * its header.
+	 */
+	public GameWriter(OutputStream out, int dimX, int dimY) throws IOException {
+
+		if (dimX <= 0 || dimY <= 0 || dimX > 0xFFFF || dimY > 0xFFFF) {
+			throw new IllegalArgumentException("unsupported board size: " + dimX + "x" + dimY);
+		}
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.moveSize = moveSize(dimX, dimY);
+		this.record = new byte[64];
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+		this.out.writeByte(FREESTYLE);
+		this.out.writeShort(dimX);
+		this.out.writeShort(dimY);
+	}
+
+	/**
+	 * Returns the number of bytes a move takes on a dimX-by-dimY board.
+	 */
+	static int moveSize(int dimX, int dimY) {
+		long squares = (long) dimX * dimY;
+		return squares <= 1 << 8 ? 1 : squares <= 1 << 16 ? 2 : 3;
+	}
+
+	/**
+	 * Writes a game as it stands on the board, won by whoever made five,
+	 * if anyone did.
+	 */
+	public void write(Board game) throws IOException {
+		write(game, game.getWinner());
+	}
+
+	/**
+	 * Writes a game as it stands on the board, won by the given player
+	 * or by nobody (Player.NONE), for games that ended some other way
+	 * than by five in a row.
+	 */
+	public void write(Board game, int winner) throws IOException {
+		if (game.getDimX() != dimX || game.getDimY() != dimY) {
+			throw new IllegalArgumentException("game is not " + dimX + "x" + dimY);
+		}
+		List<Move> moves = game.getMoveHistory();
+		int firstPlayer = moves.isEmpty() ? game.getCurrentPlayer() : moves.get(0).getPlayer();
+		int count = moves.size();
+		if (record.length < 6 + count*moveSize) {
+			record = new byte[2 * (6 + count*moveSize)];
+		}
+		int length = 0;
+		record[length++] = (byte) (firstPlayer | (winner + 1) << 1);
+		for (int left = count; ; left >>>= 7) {
+			if (left < 0x80) {
+				record[length++] = (byte) left;
+				break;
+			}
+			record[length++] = (byte) (left & 0x7F | 0x80);
+		}
+		for (int i = 0; i < count; i++) {
+			Move move = moves.get(i);
+			int square = move.getX()*dimY + move.getY();
+			for (int shift = (moveSize - 1) * 8; shift >= 0; shift -= 8) {
+				record[length++] = (byte) (square >>> shift);
+			}
+		}
+		out.write(record, 0, length);
+		games++;
+	}
+
+	/**
+	 * Returns the number of games written so far.
+	 */
+	public long getGameCount() {
+		return games;
+	}
+
+	/**
+	 * Writes out any buffered games, so that a reader sees them.
+	 */
+	public void flush() throws IOException {
+		out.flush();
+	}
+
+	@Override
+	public void close() throws IOException {
+		out.close();
+	}
+}
@@ -11,9 +11,9 @@ public class Move {
 	
 	private static int[] PRIMES_PLAYERS = new int[] {47279, 48611};
 	
-	int player;
-	int x;
-	int y;
+	final int player;
+	final int x;
+	final int y;
 	
 	public Move(int player, int x, int y) {
 		
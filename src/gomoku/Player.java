@@ -6,6 +6,8 @@ public final class Player {
 	
 	public final static int BLACK = 0;
 	public final static int WHITE = 1;
+	// Used to mark a square that no player occupies
+	public final static int NONE = -1;
 	
 	public static int other(int player) {
 		return 1 - player;
@@ -0,0 +1,85 @@
+package gomoku;
+
+import util.IntLongMap;
+
+/**
+ * A BitBoard that only stores the longs holding at least one piece, in a
+ * hash map, so that its size follows the number of pieces rather than
+ * the area of the board. The ON_BOARD plane isn't stored at all; each of
+ * its longs is worked out from the extent of the line it belongs to.
+ */
+class SparseBitBoard extends BitBoard {
+
+	IntLongMap stored;
+
+	SparseBitBoard(int dimX, int dimY) {
+
+		super(dimX, dimY, false);
+		stored = new IntLongMap();
+	}
+
+	SparseBitBoard(SparseBitBoard other) {
+
+		super(other);
+		stored = new IntLongMap(other.stored);
+	}
+
+	@Override
+	public BitBoard copy() {
+		return new SparseBitBoard(this);
+	}
+
+	@Override
+	long word(int o, int plane, int index) {
+		if (plane == ON_BOARD) {
+			return onBoard(o, index);
+		}
+		return stored.get(key(o, plane, index));
+	}
+
+	@Override
+	void toggle(int o, int plane, int index, long bits) {
+		int key = key(o, plane, index);
+		stored.put(key, stored.get(key) ^ bits);
+	}
+
+	/**
+	 * Returns the index'th long of the ON_BOARD plane in orientation o.
+	 */
+	long onBoard(int o, int index) {
+		int line = index / words[o];
+		int first = (index - line*words[o]) << 6;
+		// Squares on the line are numbered by x, or by y if it's vertical,
+		// and those on the board form a single run [from, to].
+		int from;
+		int to;
+		switch (o) {
+		case HORIZONTAL:
+			from = 0;
+			to = dimX - 1;
+			break;
+		case VERTICAL:
+			from = 0;
+			to = dimY - 1;
+			break;
+		default:
+			// Both diagonals hold the squares with x in [line-dimY+1, line]
+			from = Math.max(0, line - dimY + 1);
+			to = Math.min(dimX - 1, line);
+			break;
+		}
+		from = Math.max(from, first) - first;
+		to = Math.min(to, first + 63) - first;
+		if (from > to) {
+			return 0;
+		}
+		return (-1L >>> (63 - to)) & (-1L << from);
+	}
+
+	/**
+	 * Packs an orientation, player plane and index into a single key.
+	 */
+	private static int key(int o, int plane, int index) {
+		return (index << 3) | (o << 1) | plane;
+	}
+}
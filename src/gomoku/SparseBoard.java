@@ -0,0 +1,76 @@
+package gomoku;
+
+import util.IntMap;
+
+/**
+ * A board that only keeps what has been played on it, for boards far
+ * larger than the 15x15 or so a Board is meant for. A Board sets up two
+ * Moves, a few bits and a slot for a Square for every square up front,
+ * so its size and construction time grow with the area; this one stores its
+ * pieces in a SparseBitBoard, and makes Squares and Moves the first
+ * time they are asked for, keyed by their packed index (x*dimY + y).
+ * Those are the occupied squares and the empty ones around them that
+ * the search looks at, so its size follows the number of moves played.
+ *
+ * Everything else behaves exactly as on a Board, so the AI plays on
+ * either. Coordinates still have to fit the transposition table, which
+ * keeps 10 bits of each.
+ */
+public class SparseBoard extends Board {
+
+	IntMap<Square> squareCache;
+	// Keyed by (x*dimY + y)*2 + player
+	IntMap<Move> moveCache;
+
+	/**
+	 * Constructs an empty dimX-by-dimY board with firstPlayer
+	 * as the first to make a move.
+	 */
+	public SparseBoard(int dimX, int dimY, int firstPlayer) {
+
+		this(dimX, dimY, firstPlayer, new SparseBitBoard(dimX, dimY));
+	}
+
+	SparseBoard(int dimX, int dimY, int firstPlayer, BitBoard bits) {
+
+		super(dimX, dimY, firstPlayer, bits);
+		squareCache = new IntMap<Square>();
+		moveCache = new IntMap<Move>();
+	}
+
+	@Override
+	public Board newBoard(int firstPlayer) {
+		return new SparseBoard(dimX, dimY, firstPlayer);
+	}
+
+	@Override
+	Board blank(int firstPlayer, BitBoard bits) {
+		return new SparseBoard(dimX, dimY, firstPlayer, bits);
+	}
+
+	@Override
+	public Square getSquare(int x, int y) {
+		int index = x*dimY + y;
+		Square square = squareCache.get(index);
+		if (square == null) {
+			square = new Square(x, y);
+			square.board = this;
+			squareCache.put(index, square);
+		}
+		return square;
+	}
+
+	@Override
+	public boolean doMove(int x, int y) {
+		if (x >= 0 && x < dimX && y >= 0 && y < dimY) {
+			int key = ((x*dimY + y) << 1) | currentPlayer;
+			Move move = moveCache.get(key);
+			if (move == null) {
+				move = new Move(currentPlayer, x, y);
+				moveCache.put(key, move);
+			}
+			return doMove(move);
+		}
+		return doMove(new Move(currentPlayer,x,y));
+	}
+}
@@ -6,6 +6,11 @@ public class Square {
 	int x;
 	int y;
 	Square[] neighbors;
+	// The pieces each player has placed here before, kept for reuse
+	Piece[] placed;
+	// The board this square was made by, which links neighbors as they
+	// are asked for; null if they were all linked up front
+	Board board;
 
 	public Square(int x, int y) {
 		
@@ -13,6 +18,7 @@ public class Square {
 		this.y = y;
 		piece = null;
 		neighbors = new Square[8]; // needs to be set by board
+		placed = new Piece[2];
 	}
 	
 	public int getX() {
@@ -34,12 +40,19 @@ public class Square {
 	}
 	
 	public Piece addPiece(int player) {
-		piece = new Piece(player, this);
+		if (placed[player] == null) {
+			placed[player] = new Piece(player, this);
+		}
+		piece = placed[player];
 		return piece;
 	}
 	
 	public Square getNeighbor(int direction) {
-		return neighbors[direction];
+		Square neighbor = neighbors[direction];
+		if (neighbor == null && board != null) {
+			neighbor = board.link(this, direction);
+		}
+		return neighbor;
 	}
 	
 	public String toString() {
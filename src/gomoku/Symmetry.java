@@ -0,0 +1,76 @@
+package gomoku;
+
+/**
+ * The eight symmetries of a square board: the rotations and reflections
+ * that map it onto itself. A position and its images all have the same
+ * value, with the moves transformed to match, so anything keyed by a
+ * position can be shared between them by keying it on the canonical
+ * hash (see Board.getCanonicalHash) instead of the raw one, and storing
+ * moves as their image under the canonical symmetry.
+ *
+ * Symmetry s swaps x and y if bit 2 is set, then mirrors x if bit 0 is
+ * set and y if bit 1 is set. Boards that aren't square only have the
+ * four symmetries that don't swap x and y.
+ */
+public final class Symmetry {
+
+	public final static int COUNT = 8;
+	public final static int IDENTITY = 0;
+
+	private final static int FLIP_X = 1;
+	private final static int FLIP_Y = 2;
+	private final static int TRANSPOSE = 4;
+
+	private Symmetry() {}
+
+	/**
+	 * Returns whether symmetry s maps a dimX-by-dimY board onto itself.
+	 */
+	public static boolean applies(int s, int dimX, int dimY) {
+		return (s & TRANSPOSE) == 0 || dimX == dimY;
+	}
+
+	/**
+	 * Returns the x coordinate (x,y) is mapped to by symmetry s.
+	 */
+	public static int x(int s, int x, int y, int dimX, int dimY) {
+		int tx = (s & TRANSPOSE) != 0 ? y : x;
+		return (s & FLIP_X) != 0 ? dimX-1 - tx : tx;
+	}
+
+	/**
+	 * Returns the y coordinate (x,y) is mapped to by symmetry s.
+	 */
+	public static int y(int s, int x, int y, int dimX, int dimY) {
+		int ty = (s & TRANSPOSE) != 0 ? x : y;
+		return (s & FLIP_Y) != 0 ? dimY-1 - ty : ty;
+	}
+
+	/**
+	 * Returns the symmetry that undoes s.
+	 */
+	public static int inverse(int s) {
+		if ((s & TRANSPOSE) == 0) {
+			return s;
+		}
+		return TRANSPOSE | ((s & FLIP_X) << 1) | ((s & FLIP_Y) >> 1);
+	}
+
+	/**
+	 * Returns the image of a move under symmetry s.
+	 */
+	public static Move transform(int s, Move move, int dimX, int dimY) {
+		return new Move(move.getPlayer(),
+				x(s, move.getX(), move.getY(), dimX, dimY),
+				y(s, move.getX(), move.getY(), dimX, dimY));
+	}
+
+	/**
+	 * Returns the image under symmetry s of a square index (x*dimY + y).
+	 */
+	public static int square(int s, int square, int dimX, int dimY) {
+		int x = square / dimY;
+		int y = square % dimY;
+		return x(s, x, y, dimX, dimY)*dimY + y(s, x, y, dimX, dimY);
+	}
+}
@@ -0,0 +1,35 @@
+package gomoku;
+
+/**
+ * Zobrist keys for hashing board positions. Rather than filling a table
+ * of random numbers for a fixed board size, each key is derived by
+ * mixing the player and coordinates, so boards of any size share the
+ * same keys and identical positions always hash identically.
+ */
+public final class Zobrist {
+
+	private Zobrist() {}
+
+	/**
+	 * XORed into the hash whenever WHITE is the player to move.
+	 */
+	public final static long SIDE = mix(0x5851F42D4C957F2DL);
+
+	/**
+	 * Returns the key for a piece of the given player at (x,y).
+	 */
+	public static long key(int player, int x, int y) {
+		return mix(((((long) x << 24) | y) << 1) | player);
+	}
+
+	/**
+	 * The SplitMix64 finalizer, which spreads every input bit across
+	 * the whole output.
+	 */
+	private static long mix(long z) {
+		z += 0x9E3779B97F4A7C15L;
+		z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+}
@@ -17,13 +17,20 @@ import java.awt.event.MouseEvent;
 import java.awt.event.MouseMotionAdapter;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.File;
+import java.io.IOException;
 
 import javax.swing.JFrame;
+import javax.swing.JOptionPane;
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 
 import util.Pair;
 
+import ai.AlphaBeta;
+import ai.AsyncSearch;
 import ai.GomokuAI;
+import ai.OpeningBook;
 
 public class BoardPanel extends JPanel {
 	
@@ -39,19 +46,38 @@ public class BoardPanel extends JPanel {
 	
 	public static final int TITLE_BAR_THICKNESS = 30;
 	
+	// Milliseconds the AI may spend thinking about each move
+	public static final int DEFAULT_THINK_TIME = 1000;
+	
+	// Opening book used if it exists; see ai.OpeningBookBuilder
+	public static final String DEFAULT_BOOK = "book.bin";
+	
 	PiecePainter whitePiecePainter;
 	PiecePainter blackPiecePainter;
 	
 	Board board;
+	AlphaBeta engine;
+	// Runs the engine off the event dispatch thread
+	AsyncSearch search;
 	
 	private int drawX;
 	private int drawY;
 	private int victory = -1;
 	private Move lastMove = null;
+	private boolean thinking = false;
 	
 	public BoardPanel() {
 		
 		board = new Board(DEFAULT_DIM_X, DEFAULT_DIM_Y, Player.BLACK);
+		engine = new AlphaBeta();
+		if (new File(DEFAULT_BOOK).exists()) {
+			try {
+				engine.setBook(OpeningBook.open(new File(DEFAULT_BOOK)));
+			} catch (IOException e) {
+				System.err.println("Ignoring opening book " + DEFAULT_BOOK + ": " + e.getMessage());
+			}
+		}
+		search = new AsyncSearch(engine);
 		whitePiecePainter = new PiecePainter("img/white.gif");
 		blackPiecePainter = new PiecePainter("img/black.gif");
 		this.addMouseListener(new MouseAdapter() {
@@ -60,24 +86,39 @@ public class BoardPanel extends JPanel {
 				if (e.getButton() == 1) {
 					int x = (e.getX() - DEFAULT_OFFSET_SQUARE) / DEFAULT_SIZE_SQUARE;
 					int y = (e.getY() - DEFAULT_OFFSET_SQUARE) / DEFAULT_SIZE_SQUARE;
-					if (victory == -1 && board.doMove(x,y)) {
-						if (GomokuAI.evaluate(board)[Player.WHITE] > 5000) {
+					if (victory == -1 && !thinking && board.doMove(x,y)) {
+						// A hit is counted by the search, in getPonderHits
+						search.stopPondering(board.getLastMove());
+						if (board.isWon()) {
 							// White wins
 							victory = Player.WHITE;
 						} else {
-							Pair<Move,Integer> aiResults = GomokuAI.minimax(board,2);
-							board.doMove(aiResults.getFirst());
-							lastMove = aiResults.getFirst();
-							if (GomokuAI.evaluate(board)[Player.BLACK] > 5000) {
-								// Black wins
-								victory = Player.BLACK;
-							}
+							thinking = true;
+							search.think(board, DEFAULT_THINK_TIME, new AsyncSearch.Listener() {
+								@Override
+								public void searchFinished(final Pair<Move,Integer> aiResults) {
+									SwingUtilities.invokeLater(new Runnable() {
+										@Override
+										public void run() {
+											aiMoved(aiResults);
+										}
+									});
+								}
+								
+								@Override
+								public void searchFailed(final Throwable cause) {
+									SwingUtilities.invokeLater(new Runnable() {
+										@Override
+										public void run() {
+											aiFailed(cause);
+										}
+									});
+								}
+							});
 						}
 					}
 					repaint();
 				}
-				System.out.println("Black eval: " + GomokuAI.evaluate(board,Player.BLACK));
-				System.out.println("White eval: " + GomokuAI.evaluate(board, Player.WHITE));
 			}
 		});
 		this.addMouseMotionListener(new MouseMotionAdapter(){
@@ -92,6 +133,34 @@ public class BoardPanel extends JPanel {
 		});
 	}
 	
+	/**
+	 * Plays the engine's move, on the event dispatch thread, and starts
+	 * pondering on the reply it expects.
+	 */
+	private void aiMoved(Pair<Move,Integer> aiResults) {
+		thinking = false;
+		board.doMove(aiResults.getFirst());
+		lastMove = aiResults.getFirst();
+		if (board.isWon()) {
+			// Black wins
+			victory = Player.BLACK;
+		} else {
+			search.ponder(board, engine.getHashMove(board));
+		}
+		repaint();
+	}
+	
+	/**
+	 * Reports a search that failed, on the event dispatch thread, and
+	 * gives the human the move back so that the game can go on.
+	 */
+	private void aiFailed(Throwable cause) {
+		thinking = false;
+		board.undoMove();
+		repaint();
+		JOptionPane.showMessageDialog(this, "The engine failed: " + cause, "Error", JOptionPane.ERROR_MESSAGE);
+	}
+	
 	@Override
 	public void paintComponent(Graphics g) {
 		
@@ -102,6 +171,9 @@ public class BoardPanel extends JPanel {
 		super.paintComponent(g);
 		
 		g.drawString("(" + drawX + "," + drawY + ")",5,25);
+		if (thinking) {
+			g.drawString("Thinking...",5,40);
+		}
 		
 		// Draw vertical lines
 		for (int i = 0; i < DEFAULT_DIM_X*DEFAULT_SIZE_SQUARE+DEFAULT_OFFSET_SQUARE; i+=DEFAULT_SIZE_SQUARE) {
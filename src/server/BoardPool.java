@@ -0,0 +1,84 @@
+package server;
+
+import gomoku.Board;
+import gomoku.Player;
+import gomoku.SparseBoard;
+
+import java.util.ArrayDeque;
+
+/**
+ * Hands out empty boards of one size, and takes them back once their
+ * game is over, so that a server starting game after game doesn't build
+ * a new Board, with all its moves and bitboard planes, for each. At most
+ * maxIdle boards are kept waiting; any more are left to the garbage
+ * collector. Sparse boards are never kept: one costs next to nothing to
+ * build, and a used one holds on to the Squares and Moves of every game
+ * it has seen, so its size would follow every game played on it rather
+ * than the one under way. Safe to use from any number of threads.
+ */
+public class BoardPool {
+
+	int dimX;
+	int dimY;
+	boolean sparse;
+	int maxIdle;
+	ArrayDeque<Board> idle;
+	long created;
+	long reused;
+
+	public BoardPool(int dimX, int dimY, boolean sparse, int maxIdle) {
+
+		this.dimX = dimX;
+		this.dimY = dimY;
+		this.sparse = sparse;
+		this.maxIdle = maxIdle;
+		this.idle = new ArrayDeque<Board>();
+	}
+
+	/**
+	 * Returns an empty board, with BLACK to move first.
+	 */
+	public Board acquire() {
+		synchronized (this) {
+			Board board = idle.poll();
+			if (board != null) {
+				reused++;
+				return board;
+			}
+			created++;
+		}
+		return sparse ? new SparseBoard(dimX, dimY, Player.BLACK) : new Board(dimX, dimY, Player.BLACK);
+	}
+
+	/**
+	 * Takes back a board from acquire, which must no longer be used by
+	 * anything else. Its moves are taken back before it is reused.
+	 */
+	public void release(Board board) {
+		if (sparse) {
+			return;
+		}
+		while (board.getMoveCount() > 0) {
+			board.undoMove();
+		}
+		synchronized (this) {
+			if (idle.size() < maxIdle) {
+				idle.push(board);
+			}
+		}
+	}
+
+	/**
+	 * Returns how many boards have been built.
+	 */
+	public synchronized long getCreated() {
+		return created;
+	}
+
+	/**
+	 * Returns how many times a board has been handed out again.
+	 */
+	public synchronized long getReused() {
+		return reused;
+	}
+}
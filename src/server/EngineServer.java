@@ -0,0 +1,256 @@
+package server;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tournament.EngineSpec;
+import util.LatencyHistogram;
+import util.Pair;
+import ai.Engine;
+
+/**
+ * Hosts any number of games at once over a line-based TCP protocol (see
+ * Session), headless. Each connection is a session with a thread of its
+ * own, which spends nearly all its time waiting for the client. The
+ * searches themselves all run on one pool of search threads, no bigger
+ * than the machine has cores, so that however many games are going on
+ * the CPU is never oversubscribed. Searches wait their turn in a bounded
+ * queue, and one that finds it full is turned away with "ERR busy"
+ * instead of piling up. Each
+ * search thread keeps its own engine, made from one EngineSpec, and
+ * boards are recycled through a BoardPool. An engine is told of a new
+ * game whenever it is handed a search from a different game than its
+ * last, so nothing it learned carries over from one game, or client,
+ * to the next.
+ *
+ * The time every request takes, from reading it to writing the answer,
+ * is recorded per command, and the percentiles are reported to clients
+ * that ask with "stats" and printed when the server shuts down.
+ *
+ * Usage: java server.EngineServer [-port N] [-engine SPEC] [-size N]
+ *        [-board dense|sparse] [-threads N] [-queue N] [-sessions N]
+ */
+public class EngineServer {
+
+	public final static int DEFAULT_PORT = 5151;
+	public final static String DEFAULT_ENGINE = "alphabeta:time=1000";
+	public final static int DEFAULT_SIZE = 15;
+	public final static int DEFAULT_SESSIONS = 1000;
+	public final static int IDLE_BOARDS = 100;
+
+	EngineSpec spec;
+	BoardPool boards;
+	ThreadPoolExecutor searches;
+	// The engine of each search thread, and the game it last searched
+	ThreadLocal<Engine> engines;
+	ThreadLocal<Object> games;
+	ExecutorService sessions;
+	int maxSessions;
+	Semaphore sessionSlots;
+	// One histogram per command, and one for anything else. The map
+	// itself never changes once made.
+	Map<String,LatencyHistogram> latencies;
+
+	/**
+	 * Sets up a server that runs at most threads searches at once, with
+	 * at most queue more waiting for a thread, and that serves at most
+	 * maxSessions clients at once. With a queue of 0, a search that finds
+	 * every thread busy is turned away at once.
+	 */
+	public EngineServer(final EngineSpec spec, BoardPool boards, int threads, int queue, int maxSessions) {
+
+		this.spec = spec;
+		this.boards = boards;
+		BlockingQueue<Runnable> waiting = queue == 0 ? new SynchronousQueue<Runnable>()
+				: new ArrayBlockingQueue<Runnable>(queue);
+		this.searches = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				waiting, threadFactory("search"));
+		this.engines = new ThreadLocal<Engine>() {
+			@Override
+			protected Engine initialValue() {
+				return spec.create();
+			}
+		};
+		this.games = new ThreadLocal<Object>();
+		this.sessions = Executors.newCachedThreadPool(threadFactory("session"));
+		this.maxSessions = maxSessions;
+		this.sessionSlots = new Semaphore(maxSessions);
+		this.latencies = new LinkedHashMap<String,LatencyHistogram>();
+		for (String command : Session.COMMANDS) {
+			latencies.put(command, new LatencyHistogram());
+		}
+		latencies.put("other", new LatencyHistogram());
+	}
+
+	private static ThreadFactory threadFactory(final String name) {
+		final AtomicInteger count = new AtomicInteger();
+		return new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable r) {
+				Thread thread = new Thread(r, name + "-" + count.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		};
+	}
+
+	/**
+	 * Accepts connections on the socket until it is closed, starting a
+	 * session for each.
+	 */
+	public void serve(ServerSocket server) throws IOException {
+		while (true) {
+			Socket socket = server.accept();
+			if (!sessionSlots.tryAcquire()) {
+				PrintWriter out = new PrintWriter(
+						new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+				out.print("ERR too many sessions\r\n");
+				out.flush();
+				socket.close();
+				continue;
+			}
+			socket.setTcpNoDelay(true);
+			sessions.execute(new Session(this, socket));
+		}
+	}
+
+	void sessionEnded() {
+		sessionSlots.release();
+	}
+
+	/**
+	 * Searches the board on one of the search threads, and waits for the
+	 * result. The board must not be touched by anything else meanwhile.
+	 * game identifies the game being played on it; an engine that last
+	 * searched another game starts afresh. Throws a
+	 * RejectedExecutionException if too many searches are already
+	 * waiting.
+	 */
+	Pair<Move,Integer> think(final Board board, final Object game) throws InterruptedException, ExecutionException {
+		return searches.submit(new Callable<Pair<Move,Integer>>() {
+			@Override
+			public Pair<Move,Integer> call() {
+				Engine engine = engines.get();
+				if (games.get() != game) {
+					engine.newGame();
+					games.set(game);
+				}
+				return engine.think(board);
+			}
+		}).get();
+	}
+
+	/**
+	 * Records how long a request took, in nanoseconds.
+	 */
+	void record(String command, long nanos) {
+		LatencyHistogram histogram = latencies.get(command);
+		if (histogram == null) {
+			histogram = latencies.get("other");
+		}
+		histogram.record(nanos);
+	}
+
+	/**
+	 * Returns how busy the server is, and the latency percentiles, in
+	 * milliseconds, of every command that has been used, on one line.
+	 */
+	public String getStats() {
+		StringBuilder stats = new StringBuilder();
+		stats.append(String.format("sessions=%d searching=%d queued=%d boards=%d reused=%d",
+				maxSessions - sessionSlots.availablePermits(),
+				searches.getActiveCount(), searches.getQueue().size(),
+				boards.getCreated(), boards.getReused()));
+		for (Map.Entry<String,LatencyHistogram> entry : latencies.entrySet()) {
+			LatencyHistogram histogram = entry.getValue();
+			if (histogram.getCount() > 0) {
+				stats.append(String.format(" | %s n=%d p50=%.2f p90=%.2f p99=%.2f max=%.2f",
+						entry.getKey(), histogram.getCount(),
+						histogram.percentile(0.5) / 1e6, histogram.percentile(0.9) / 1e6,
+						histogram.percentile(0.99) / 1e6, histogram.getMax() / 1e6));
+			}
+		}
+		return stats.toString();
+	}
+
+	public static void main(String[] args) throws IOException {
+		int port = DEFAULT_PORT, size = DEFAULT_SIZE, sessions = DEFAULT_SESSIONS;
+		int threads = Runtime.getRuntime().availableProcessors(), queue = -1;
+		String engine = DEFAULT_ENGINE;
+		boolean sparse = false;
+		EngineSpec spec;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i+1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + args[i]);
+				}
+				String value = args[i+1];
+				switch (args[i]) {
+				case "-port": port = Integer.parseInt(value); break;
+				case "-engine": engine = value; break;
+				case "-size": size = Integer.parseInt(value); break;
+				case "-board":
+					if (!value.equals("dense") && !value.equals("sparse")) {
+						throw new IllegalArgumentException("unknown board: " + value);
+					}
+					sparse = value.equals("sparse");
+					break;
+				case "-threads": threads = Integer.parseInt(value); break;
+				case "-queue":
+					queue = Integer.parseInt(value);
+					if (queue < 0) {
+						throw new IllegalArgumentException("queue must not be negative: " + value);
+					}
+					break;
+				case "-sessions": sessions = Integer.parseInt(value); break;
+				default:
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+				}
+			}
+			spec = EngineSpec.parse(engine);
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: java server.EngineServer [-port N] [-engine SPEC] [-size N]"
+					+ " [-board dense|sparse] [-threads N] [-queue N] [-sessions N]");
+			System.exit(1);
+			return;
+		}
+		if (queue < 0) {
+			// Every session may wait its turn; a shorter queue sheds load
+			queue = sessions;
+		}
+		final EngineServer server = new EngineServer(spec,
+				new BoardPool(size, size, sparse, IDLE_BOARDS), threads, queue, sessions);
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			@Override
+			public void run() {
+				System.out.println(server.getStats());
+			}
+		});
+		ServerSocket socket = new ServerSocket(port);
+		System.out.println("serving " + spec + " on " + size + "x" + size + " boards, port " + port
+				+ ", " + threads + " search threads");
+		server.serve(socket);
+	}
+}
@@ -0,0 +1,155 @@
+package server;
+
+import gomoku.Board;
+import gomoku.Move;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+
+import util.Pair;
+
+/**
+ * One client's connection to an EngineServer, read and answered a line
+ * at a time on its own thread. The client plays one game at a time on a
+ * board borrowed from the server's pool, and every request gets exactly
+ * one line back: a result, or "ERR" and the reason.
+ *
+ *   new          start a new game, BLACK to move        OK
+ *   play X Y     play a move for the player to move     OK
+ *   go           have the engine move                   MOVE X Y
+ *   undo         take back the last move                OK
+ *   stats        the server's request latencies         STATS ...
+ *   quit         close the connection                   BYE
+ *
+ * "play" and "go" answer "OK WIN" and "MOVE X Y WIN" when the move
+ * makes five.
+ */
+class Session implements Runnable {
+
+	final static String[] COMMANDS = {"new", "play", "go", "undo", "stats", "quit"};
+
+	EngineServer server;
+	Socket socket;
+	Board board;
+	// Made anew for every game, to tell the engines one game from another
+	Object game;
+
+	Session(EngineServer server, Socket socket) {
+
+		this.server = server;
+		this.socket = socket;
+	}
+
+	@Override
+	public void run() {
+		try {
+			BufferedReader in = new BufferedReader(
+					new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			PrintWriter out = new PrintWriter(
+					new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8));
+			String line;
+			while ((line = in.readLine()) != null) {
+				long start = System.nanoTime();
+				String[] words = line.trim().split("\\s+");
+				String command = words[0].toLowerCase();
+				String reply = handle(command, words);
+				out.print(reply);
+				out.print("\r\n");
+				out.flush();
+				server.record(command, System.nanoTime() - start);
+				if (command.equals("quit")) {
+					break;
+				}
+			}
+		} catch (IOException e) {
+			// The client went away; there is nobody left to tell
+		} finally {
+			if (board != null) {
+				server.boards.release(board);
+				board = null;
+			}
+			try {
+				socket.close();
+			} catch (IOException e) {}
+			server.sessionEnded();
+		}
+	}
+
+	/**
+	 * Carries out one request, and returns the line to answer it with.
+	 */
+	String handle(String command, String[] words) {
+		switch (command) {
+		case "new":
+			if (board != null) {
+				server.boards.release(board);
+			}
+			board = server.boards.acquire();
+			game = new Object();
+			return "OK";
+		case "play":
+			if (board == null) {
+				return "ERR no game; send new first";
+			}
+			if (words.length != 3) {
+				return "ERR usage: play X Y";
+			}
+			int x, y;
+			try {
+				x = Integer.parseInt(words[1]);
+				y = Integer.parseInt(words[2]);
+			} catch (NumberFormatException e) {
+				return "ERR usage: play X Y";
+			}
+			if (board.isWon() || !board.doMove(x, y)) {
+				return "ERR illegal move";
+			}
+			return board.isWon() ? "OK WIN" : "OK";
+		case "go":
+			if (board == null) {
+				return "ERR no game; send new first";
+			}
+			if (board.isWon() || board.getMoveCount() == board.getDimX() * board.getDimY()) {
+				return "ERR game over";
+			}
+			Pair<Move,Integer> result;
+			try {
+				result = server.think(board, game);
+			} catch (RejectedExecutionException e) {
+				return "ERR busy";
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return "ERR interrupted";
+			} catch (ExecutionException e) {
+				return "ERR " + e.getCause();
+			}
+			if (result == null || result.getFirst() == null) {
+				return "ERR no move";
+			}
+			Move move = result.getFirst();
+			if (!board.doMove(move.getX(), move.getY())) {
+				return "ERR engine chose an illegal move";
+			}
+			return "MOVE " + move.getX() + " " + move.getY() + (board.isWon() ? " WIN" : "");
+		case "undo":
+			if (board == null || board.getMoveCount() == 0) {
+				return "ERR nothing to undo";
+			}
+			board.undoMove();
+			return "OK";
+		case "stats":
+			return "STATS " + server.getStats();
+		case "quit":
+			return "BYE";
+		default:
+			return "ERR unknown command: " + command;
+		}
+	}
+}
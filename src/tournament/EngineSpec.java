@@ -0,0 +1,196 @@
+package tournament;
+
+import java.io.File;
+import java.io.IOException;
+
+import ai.AlphaBeta;
+import ai.EvaluationOrdering;
+import ai.Engine;
+import ai.MinimaxEngine;
+import ai.MonteCarloSearch;
+import ai.OpeningBook;
+import ai.ParallelSearch;
+import ai.Reductions;
+import ai.SequenceEvaluator;
+
+/**
+ * A description of an engine and its settings, from which as many
+ * independent copies as there are threads can be made. Specs are written
+ * as a name followed by comma separated options, e.g.
+ *
+ *   alphabeta:time=200
+ *   alphabeta:depth=5,eval=sequence
+ *   alphabeta:threads=4,time=500
+ *   alphabeta:time=200,lmr=0.5/2,futility=100/300
+ *   mcts:threads=4,time=500
+ *   minimax:depth=2
+ *
+ * alphabeta takes depth, time (milliseconds, overrides depth), eval
+ * (incremental or sequence), threads, book (an OpeningBook file), lmr
+ * (off, or the base and divisor of the Reductions table) and futility
+ * (off, or the margins for depths 1, 2 and so on); mcts takes time,
+ * threads, iterations (playouts per move, if there is no time) and
+ * rollout (greedy moves per playout); minimax takes depth. A depth is
+ * from 1 to AlphaBeta.MAX_DEPTH and threads at least 1. A time of 0,
+ * the default, leaves the limit to depth or iterations; it can't be
+ * negative.
+ */
+public class EngineSpec {
+
+	String text;
+	String name;
+	int depth;
+	long time;
+	String eval;
+	int threads;
+	// Shared by every engine made from this spec
+	OpeningBook book;
+	double lmrBase;
+	double lmrDivisor;
+	int[] futility;
+	int iterations;
+	int rollout;
+
+	private EngineSpec(String text) {
+
+		this.text = text;
+		this.depth = 4;
+		this.eval = "incremental";
+		this.threads = 1;
+		this.lmrBase = Reductions.DEFAULT_BASE;
+		this.lmrDivisor = Reductions.DEFAULT_DIVISOR;
+		this.futility = new int[0];
+		this.iterations = MonteCarloSearch.DEFAULT_ITERATIONS;
+		this.rollout = MonteCarloSearch.DEFAULT_ROLLOUT;
+	}
+
+	/**
+	 * Parses a spec, throwing an IllegalArgumentException that says what
+	 * is wrong with it if it can't be.
+	 */
+	public static EngineSpec parse(String text) {
+		EngineSpec spec = new EngineSpec(text);
+		int colon = text.indexOf(':');
+		spec.name = colon < 0 ? text : text.substring(0, colon);
+		if (!spec.name.equals("alphabeta") && !spec.name.equals("minimax") && !spec.name.equals("mcts")) {
+			throw new IllegalArgumentException("unknown engine: " + spec.name);
+		}
+		if (colon < 0) {
+			return spec;
+		}
+		for (String option : text.substring(colon+1).split(",")) {
+			int equals = option.indexOf('=');
+			if (equals < 0) {
+				throw new IllegalArgumentException("expected key=value: " + option);
+			}
+			String key = option.substring(0, equals);
+			String value = option.substring(equals+1);
+			try {
+				boolean search = !spec.name.equals("minimax");
+				if (key.equals("depth") && !spec.name.equals("mcts")) {
+					spec.depth = Integer.parseInt(value);
+					if (spec.depth < 1 || spec.depth > AlphaBeta.MAX_DEPTH) {
+						throw new IllegalArgumentException("depth must be 1 to " + AlphaBeta.MAX_DEPTH + ": " + option);
+					}
+				} else if (key.equals("time") && search) {
+					spec.time = Long.parseLong(value);
+					if (spec.time < 0) {
+						throw new IllegalArgumentException("time must not be negative: " + option);
+					}
+				} else if (key.equals("threads") && search) {
+					spec.threads = Integer.parseInt(value);
+					if (spec.threads < 1) {
+						throw new IllegalArgumentException("threads must be at least 1: " + option);
+					}
+				} else if (key.equals("iterations") && spec.name.equals("mcts")) {
+					spec.iterations = Integer.parseInt(value);
+				} else if (key.equals("rollout") && spec.name.equals("mcts")) {
+					spec.rollout = Integer.parseInt(value);
+				} else if (key.equals("book") && spec.name.equals("alphabeta")) {
+					spec.book = OpeningBook.open(new File(value));
+				} else if (key.equals("lmr") && spec.name.equals("alphabeta")) {
+					if (value.equals("off")) {
+						spec.lmrDivisor = 0;
+					} else {
+						String[] parts = value.split("/");
+						if (parts.length != 2) {
+							throw new IllegalArgumentException("expected lmr=BASE/DIVISOR: " + option);
+						}
+						spec.lmrBase = Double.parseDouble(parts[0]);
+						spec.lmrDivisor = Double.parseDouble(parts[1]);
+					}
+				} else if (key.equals("futility") && spec.name.equals("alphabeta")) {
+					String[] parts = value.equals("off") ? new String[0] : value.split("/");
+					spec.futility = new int[parts.length];
+					for (int i = 0; i < parts.length; i++) {
+						spec.futility[i] = Integer.parseInt(parts[i]);
+					}
+				} else if (key.equals("eval") && spec.name.equals("alphabeta")
+						&& (value.equals("incremental") || value.equals("sequence"))) {
+					spec.eval = value;
+				} else {
+					throw new IllegalArgumentException("bad option for " + spec.name + ": " + option);
+				}
+			} catch (NumberFormatException e) {
+				throw new IllegalArgumentException("not a number: " + option);
+			} catch (IOException e) {
+				throw new IllegalArgumentException("can't open book: " + option + ": " + e.getMessage());
+			}
+		}
+		if (spec.threads > 1 && !spec.eval.equals("incremental")) {
+			throw new IllegalArgumentException("threads only work with eval=incremental");
+		}
+		return spec;
+	}
+
+	/**
+	 * Makes a new engine to these settings.
+	 */
+	public Engine create() {
+		if (name.equals("minimax")) {
+			return new MinimaxEngine(depth);
+		}
+		if (name.equals("mcts")) {
+			MonteCarloSearch search = new MonteCarloSearch(threads);
+			search.setTimeLimit(time);
+			search.setIterations(iterations);
+			search.setRollout(rollout);
+			return search;
+		}
+		if (threads > 1) {
+			ParallelSearch search = new ParallelSearch(threads);
+			search.setDepth(depth);
+			search.setTimeLimit(time);
+			search.setBook(book);
+			search.setReductions(reductions());
+			return search;
+		}
+		AlphaBeta search = eval.equals("sequence") ?
+				new AlphaBeta(new SequenceEvaluator(), new EvaluationOrdering(2)) : new AlphaBeta();
+		search.setDepth(depth);
+		search.setTimeLimit(time);
+		search.setBook(book);
+		search.setReductions(reductions());
+		return search;
+	}
+
+	private Reductions reductions() {
+		return new Reductions(lmrBase, lmrDivisor, futility);
+	}
+
+	/**
+	 * Releases whatever threads an engine made by create() holds.
+	 */
+	public static void dispose(Engine engine) {
+		if (engine instanceof ParallelSearch) {
+			((ParallelSearch) engine).shutdown();
+		} else if (engine instanceof MonteCarloSearch) {
+			((MonteCarloSearch) engine).shutdown();
+		}
+	}
+
+	@Override
+	public String toString() {
+		return text;
+	}
+}
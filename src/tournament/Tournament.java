@@ -0,0 +1,340 @@
+package tournament;
+
+import gomoku.Board;
+import gomoku.GameWriter;
+import gomoku.Move;
+import gomoku.Player;
+import gomoku.SparseBoard;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import util.Pair;
+
+import ai.Engine;
+
+/**
+ * Plays two engines against each other, headless, on every core. Each
+ * opening is played twice, once with each engine as BLACK, and is made
+ * of a few random moves near the center so that the games differ. At
+ * the end it reports each engine's results, its speed and how long it
+ * took per move, and can also write one line per game to a CSV file.
+ *
+ * Usage: java tournament.Tournament -a SPEC -b SPEC [-games N]
+ *        [-threads N] [-size N] [-board dense|sparse] [-opening N]
+ *        [-seed N] [-csv FILE] [-record FILE]
+ *
+ * A game in which anything goes wrong, such as an engine throwing, is
+ * reported and not scored, and the tournament then exits with status 1.
+ *
+ * A sparse board (see SparseBoard) only pays for the squares in play,
+ * which suits sizes well beyond the default. -record keeps every game
+ * played in a GameWriter file, for OpeningBookBuilder -in or anything
+ * else that wants them.
+ *
+ * See EngineSpec for how engines are described.
+ */
+public class Tournament {
+
+	public static final int DEFAULT_GAMES = 100;
+	public static final int DEFAULT_SIZE = 15;
+	public static final int DEFAULT_OPENING = 4;
+	// Opening moves are played within this many squares of the center
+	public static final int OPENING_RADIUS = 3;
+
+	EngineSpec[] specs;
+	int games;
+	int threads;
+	int size;
+	boolean sparse;
+	int opening;
+	long seed;
+	PrintWriter csv;
+	GameWriter record;
+
+	Side[] sides;
+	int draws;
+	// Games that failed instead of finishing
+	int errors;
+	AtomicInteger next;
+
+	public Tournament(EngineSpec a, EngineSpec b) {
+
+		this.specs = new EngineSpec[]{a, b};
+		this.games = DEFAULT_GAMES;
+		this.threads = Runtime.getRuntime().availableProcessors();
+		this.size = DEFAULT_SIZE;
+		this.opening = DEFAULT_OPENING;
+		this.sides = new Side[]{new Side(), new Side()};
+		this.next = new AtomicInteger();
+	}
+
+	/**
+	 * What happened to one engine over the whole tournament.
+	 */
+	static class Side {
+
+		int wins;
+		int losses;
+		int forfeits;
+		long nodes;
+		long time;
+		int moves;
+		// Nanoseconds taken by each move, for the percentiles
+		long[] moveTimes = new long[1024];
+
+		synchronized void addMove(long nanos, long nodes) {
+			if (moves == moveTimes.length) {
+				moveTimes = Arrays.copyOf(moveTimes, 2*moves);
+			}
+			moveTimes[moves++] = nanos;
+			this.nodes += nodes;
+			this.time += nanos;
+		}
+
+		/**
+		 * Returns the given percentile of the move times, in milliseconds.
+		 */
+		synchronized double percentile(double p) {
+			if (moves == 0) {
+				return 0;
+			}
+			long[] sorted = Arrays.copyOf(moveTimes, moves);
+			Arrays.sort(sorted);
+			return sorted[Math.min(moves-1, (int) (p * moves))] / 1e6;
+		}
+	}
+
+	/**
+	 * Plays all the games and returns once they are finished.
+	 */
+	public void run() throws InterruptedException {
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		for (int i = 0; i < threads; i++) {
+			pool.execute(new Runnable() {
+				@Override
+				public void run() {
+					Engine[] engines = new Engine[2];
+					int game;
+					while ((game = next.getAndIncrement()) < games) {
+						try {
+							for (int side = 0; side < 2; side++) {
+								if (engines[side] == null) {
+									engines[side] = specs[side].create();
+								}
+							}
+							play(game, engines);
+						} catch (Throwable e) {
+							failed(game, e);
+							// An engine may have been left half way through a
+							// search, so the next game gets new ones
+							dispose(engines);
+						}
+					}
+					dispose(engines);
+				}
+			});
+		}
+		pool.shutdown();
+		pool.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+	}
+
+	private synchronized void failed(int game, Throwable e) {
+		errors++;
+		System.err.println("game " + game + " failed: " + e);
+	}
+
+	private static void dispose(Engine[] engines) {
+		for (int side = 0; side < 2; side++) {
+			if (engines[side] != null) {
+				EngineSpec.dispose(engines[side]);
+				engines[side] = null;
+			}
+		}
+	}
+
+	/**
+	 * Plays one game. Engine A is BLACK in even games and WHITE in odd
+	 * ones, and each pair of games shares an opening.
+	 */
+	void play(int game, Engine[] engines) {
+		engines[0].newGame();
+		engines[1].newGame();
+		int blackSide = game & 1;
+		Board board = sparse ? new SparseBoard(size, size, Player.BLACK)
+				: new Board(size, size, Player.BLACK);
+		playOpening(board, new Random(seed * 1000003 + game/2));
+		int winner = -1;
+		while (board.getMoveCount() < size*size) {
+			int side = board.getCurrentPlayer() == Player.BLACK ? blackSide : 1-blackSide;
+			long start = System.nanoTime();
+			Pair<Move,Integer> result = engines[side].think(board);
+			sides[side].addMove(System.nanoTime() - start, engines[side].getNodes());
+			Move move = result == null ? null : result.getFirst();
+			if (move == null || !board.doMove(move.getX(), move.getY())) {
+				// No move, or an illegal one, loses the game
+				synchronized (this) {
+					sides[side].forfeits++;
+				}
+				winner = 1-side;
+				break;
+			}
+			if (board.isWon()) {
+				winner = side;
+				break;
+			}
+		}
+		synchronized (this) {
+			if (winner < 0) {
+				draws++;
+			} else {
+				sides[winner].wins++;
+				sides[1-winner].losses++;
+			}
+			if (csv != null) {
+				csv.println(game + "," + (blackSide == 0 ? "A,B" : "B,A") + ","
+						+ (winner < 0 ? "draw" : winner == 0 ? "A" : "B") + "," + board.getMoveCount());
+			}
+			if (record != null) {
+				try {
+					record.write(board, winner < 0 ? Player.NONE
+							: winner == blackSide ? Player.BLACK : Player.WHITE);
+				} catch (IOException e) {
+					throw new RuntimeException(e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Plays random moves near the center, taking back any that would
+	 * make five.
+	 */
+	void playOpening(Board board, Random random) {
+		int center = size/2;
+		int span = Math.min(2*OPENING_RADIUS + 1, size);
+		int low = Math.max(0, center - OPENING_RADIUS);
+		int tries = 0;
+		while (board.getMoveCount() < opening && tries++ < 1000) {
+			int x = low + random.nextInt(span);
+			int y = low + random.nextInt(span);
+			if (x >= size || y >= size || board.get(x, y) != Player.NONE) {
+				continue;
+			}
+			board.doMove(x, y);
+			if (board.isWon()) {
+				board.undoMove();
+			}
+		}
+	}
+
+	public void printSummary() {
+		int played = sides[0].wins + sides[0].losses + draws;
+		System.out.println(played + " games, " + size + "x" + size + ", " + opening + " opening moves"
+				+ (errors > 0 ? ", " + errors + " failed" : ""));
+		for (int i = 0; i < 2; i++) {
+			Side side = sides[i];
+			double score = played == 0 ? 0 : (side.wins + draws/2.0) / played;
+			System.out.println();
+			System.out.println((i == 0 ? "A" : "B") + ": " + specs[i]);
+			System.out.printf("  %d wins, %d losses, %d draws, %d forfeits: score %.1f%%, Elo %+.0f%n",
+					side.wins, side.losses, draws, side.forfeits, 100*score, elo(score));
+			System.out.printf("  %d moves, %.1f ms/move (p50 %.1f, p95 %.1f, max %.1f), %.0f nodes/s%n",
+					side.moves, side.moves == 0 ? 0 : side.time / 1e6 / side.moves,
+					side.percentile(0.5), side.percentile(0.95), side.percentile(1),
+					side.time == 0 ? 0 : side.nodes * 1e9 / side.time);
+		}
+	}
+
+	/**
+	 * Returns the Elo difference implied by a score between 0 and 1.
+	 */
+	static double elo(double score) {
+		if (score <= 0 || score >= 1) {
+			return score <= 0 ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY;
+		}
+		return -400 * Math.log10(1/score - 1);
+	}
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		String a = null, b = null, csvFile = null, recordFile = null;
+		int games = DEFAULT_GAMES, threads = 0, size = DEFAULT_SIZE, opening = DEFAULT_OPENING;
+		long seed = 0;
+		boolean sparse = false;
+		Tournament tournament;
+		try {
+			for (int i = 0; i < args.length; i += 2) {
+				if (i+1 >= args.length) {
+					throw new IllegalArgumentException("missing value for " + args[i]);
+				}
+				String value = args[i+1];
+				switch (args[i]) {
+				case "-a": a = value; break;
+				case "-b": b = value; break;
+				case "-games": games = Integer.parseInt(value); break;
+				case "-threads": threads = Integer.parseInt(value); break;
+				case "-size": size = Integer.parseInt(value); break;
+				case "-board":
+					if (!value.equals("dense") && !value.equals("sparse")) {
+						throw new IllegalArgumentException("unknown board: " + value);
+					}
+					sparse = value.equals("sparse");
+					break;
+				case "-opening": opening = Integer.parseInt(value); break;
+				case "-seed": seed = Long.parseLong(value); break;
+				case "-csv": csvFile = value; break;
+				case "-record": recordFile = value; break;
+				default:
+					throw new IllegalArgumentException("unknown option: " + args[i]);
+				}
+			}
+			if (a == null || b == null) {
+				throw new IllegalArgumentException("both -a and -b are required");
+			}
+			tournament = new Tournament(EngineSpec.parse(a), EngineSpec.parse(b));
+		} catch (IllegalArgumentException e) {
+			System.err.println(e.getMessage());
+			System.err.println("usage: java tournament.Tournament -a SPEC -b SPEC [-games N] [-threads N]"
+					+ " [-size N] [-board dense|sparse] [-opening N] [-seed N] [-csv FILE]"
+					+ " [-record FILE]");
+			System.exit(1);
+			return;
+		}
+		tournament.games = games;
+		tournament.size = size;
+		tournament.sparse = sparse;
+		tournament.opening = opening;
+		tournament.seed = seed;
+		if (threads > 0) {
+			tournament.threads = threads;
+		}
+		if (csvFile != null) {
+			tournament.csv = new PrintWriter(new FileWriter(csvFile));
+			tournament.csv.println("game,black,white,winner,moves");
+		}
+		if (recordFile != null) {
+			tournament.record = new GameWriter(new File(recordFile), size, size);
+		}
+		long start = System.nanoTime();
+		tournament.run();
+		if (tournament.csv != null) {
+			tournament.csv.close();
+		}
+		if (tournament.record != null) {
+			tournament.record.close();
+		}
+		tournament.printSummary();
+		System.out.printf("%nfinished in %.1f s%n", (System.nanoTime() - start) / 1e9);
+		if (tournament.errors > 0) {
+			System.exit(1);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+package util;
+
+/**
+ * A hash map from int keys to long values in which every key that has
+ * not been stored maps to 0, like the slots of a long[] that were never
+ * written. Storing 0 removes the key, so the map only ever holds as many
+ * entries as there are non-zero values.
+ *
+ * Entries live in two parallel arrays with linear probing, so neither
+ * lookups nor updates allocate once the table is big enough.
+ */
+public class IntLongMap {
+
+	private final static int MIN_CAPACITY = 16;
+
+	int[] keys;
+	// A slot is free if and only if its value is 0
+	long[] values;
+	int size;
+	int mask;
+
+	public IntLongMap() {
+
+		keys = new int[MIN_CAPACITY];
+		values = new long[MIN_CAPACITY];
+		mask = MIN_CAPACITY - 1;
+	}
+
+	/**
+	 * Makes a map holding the same entries as another.
+	 */
+	public IntLongMap(IntLongMap other) {
+
+		keys = other.keys.clone();
+		values = other.values.clone();
+		size = other.size;
+		mask = other.mask;
+	}
+
+	/**
+	 * Returns the value stored for the key, or 0 if there is none.
+	 */
+	public long get(int key) {
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			if (values[i] == 0) {
+				return 0;
+			} else if (keys[i] == key) {
+				return values[i];
+			}
+		}
+	}
+
+	/**
+	 * Stores a value for the key, replacing any it had. Storing 0 removes
+	 * the key.
+	 */
+	public void put(int key, long value) {
+		int i = slot(key);
+		while (values[i] != 0 && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		if (values[i] != 0) {
+			if (value == 0) {
+				remove(i);
+			} else {
+				values[i] = value;
+			}
+		} else if (value != 0) {
+			keys[i] = key;
+			values[i] = value;
+			if (++size > keys.length >>> 1) {
+				resize(keys.length << 1);
+			}
+		}
+	}
+
+	/**
+	 * Halves every value, as >> 1 does, which removes the keys of those
+	 * that become 0.
+	 */
+	public void halve() {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new int[oldKeys.length];
+		values = new long[oldValues.length];
+		size = 0;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != 0) {
+				put(oldKeys[i], oldValues[i] >> 1);
+			}
+		}
+	}
+
+	/**
+	 * Returns the number of keys with a non-zero value.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Empties slot i, and moves back any entry after it that could no
+	 * longer be reached past the gap.
+	 */
+	private void remove(int i) {
+		size--;
+		int gap = i;
+		for (int j = (i + 1) & mask; values[j] != 0; j = (j + 1) & mask) {
+			int home = slot(keys[j]);
+			// Move the entry if its home slot isn't cyclically in (gap, j]
+			if (((j - home) & mask) >= ((j - gap) & mask)) {
+				keys[gap] = keys[j];
+				values[gap] = values[j];
+				gap = j;
+			}
+		}
+		values[gap] = 0;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldValues = values;
+		keys = new int[capacity];
+		values = new long[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != 0) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != 0) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot a key is first looked for in. Multiplying by the
+	 * golden ratio spreads out keys that differ only in their low bits.
+	 */
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
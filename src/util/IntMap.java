@@ -0,0 +1,92 @@
+package util;
+
+/**
+ * A hash map from int keys to non-null values, for caching objects by a
+ * packed index without boxing the index. Entries can't be removed.
+ *
+ * Entries live in two parallel arrays with linear probing, so lookups
+ * don't allocate.
+ */
+public class IntMap<V> {
+
+	private final static int MIN_CAPACITY = 16;
+
+	int[] keys;
+	// A slot is free if and only if its value is null
+	Object[] values;
+	int size;
+	int mask;
+
+	public IntMap() {
+
+		keys = new int[MIN_CAPACITY];
+		values = new Object[MIN_CAPACITY];
+		mask = MIN_CAPACITY - 1;
+	}
+
+	/**
+	 * Returns the value stored for the key, or null if there is none.
+	 */
+	@SuppressWarnings("unchecked")
+	public V get(int key) {
+		for (int i = slot(key); ; i = (i + 1) & mask) {
+			if (values[i] == null) {
+				return null;
+			} else if (keys[i] == key) {
+				return (V) values[i];
+			}
+		}
+	}
+
+	/**
+	 * Stores a value for the key, replacing any it had.
+	 */
+	public void put(int key, V value) {
+		if (value == null) {
+			throw new NullPointerException();
+		}
+		int i = slot(key);
+		while (values[i] != null && keys[i] != key) {
+			i = (i + 1) & mask;
+		}
+		boolean added = values[i] == null;
+		keys[i] = key;
+		values[i] = value;
+		if (added && ++size > keys.length >>> 1) {
+			resize(keys.length << 1);
+		}
+	}
+
+	/**
+	 * Returns the number of keys stored.
+	 */
+	public int size() {
+		return size;
+	}
+
+	private void resize(int capacity) {
+		int[] oldKeys = keys;
+		Object[] oldValues = values;
+		keys = new int[capacity];
+		values = new Object[capacity];
+		mask = capacity - 1;
+		for (int i = 0; i < oldKeys.length; i++) {
+			if (oldValues[i] != null) {
+				int j = slot(oldKeys[i]);
+				while (values[j] != null) {
+					j = (j + 1) & mask;
+				}
+				keys[j] = oldKeys[i];
+				values[j] = oldValues[i];
+			}
+		}
+	}
+
+	/**
+	 * Returns the slot a key is first looked for in; see IntLongMap.
+	 */
+	private int slot(int key) {
+		int h = key * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+}
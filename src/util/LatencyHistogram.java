@@ -0,0 +1,101 @@
+package util;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets, so that percentiles can be read off
+ * without keeping every duration. Each power of two is split into
+ * 2^SUB_BITS buckets, which keeps every bucket within about 3% of the
+ * durations in it however many are recorded. Recording is lock free,
+ * and safe from any number of threads.
+ */
+public class LatencyHistogram {
+
+	final static int SUB_BITS = 5;
+	final static int SUB_BUCKETS = 1 << SUB_BITS;
+
+	AtomicLongArray counts;
+	AtomicLong count;
+	AtomicLong max;
+
+	public LatencyHistogram() {
+
+		counts = new AtomicLongArray(64 * SUB_BUCKETS);
+		count = new AtomicLong();
+		max = new AtomicLong();
+	}
+
+	/**
+	 * Records a duration, in nanoseconds.
+	 */
+	public void record(long nanos) {
+		if (nanos < 0) {
+			nanos = 0;
+		}
+		counts.incrementAndGet(bucket(nanos));
+		count.incrementAndGet();
+		long old;
+		while (nanos > (old = max.get()) && !max.compareAndSet(old, nanos)) {}
+	}
+
+	/**
+	 * Returns the number of durations recorded.
+	 */
+	public long getCount() {
+		return count.get();
+	}
+
+	/**
+	 * Returns the longest duration recorded, in nanoseconds.
+	 */
+	public long getMax() {
+		return max.get();
+	}
+
+	/**
+	 * Returns a duration, in nanoseconds, that at least the fraction p
+	 * of the recorded durations are no longer than, or 0 if none have
+	 * been recorded. It errs on the long side by at most one bucket.
+	 */
+	public long percentile(double p) {
+		long total = count.get();
+		if (total == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(p * total));
+		long seen = 0;
+		for (int i = 0; i < counts.length(); i++) {
+			seen += counts.get(i);
+			if (seen >= rank) {
+				return Math.min(upperBound(i), max.get());
+			}
+		}
+		return max.get();
+	}
+
+	/**
+	 * Returns the bucket for a duration. Durations below SUB_BUCKETS
+	 * each have their own; above that, a duration's bucket is given by
+	 * its highest set bit and the SUB_BITS bits after it.
+	 */
+	static int bucket(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		int shift = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BITS;
+		return (shift << SUB_BITS) + (int) (nanos >>> shift);
+	}
+
+	/**
+	 * Returns the longest duration that falls into bucket i.
+	 */
+	static long upperBound(int i) {
+		if (i < 2 * SUB_BUCKETS) {
+			return i;
+		}
+		int shift = (i >>> SUB_BITS) - 1;
+		long top = i - ((long) shift << SUB_BITS);
+		return ((top + 1) << shift) - 1;
+	}
+}